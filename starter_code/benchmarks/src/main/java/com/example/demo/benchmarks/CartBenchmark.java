@@ -0,0 +1,74 @@
+package com.example.demo.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+
+/**
+ * {@link Cart#addItem} and {@link Cart#removeItem} against carts with a
+ * growing number of distinct items; the cost per call should stay flat.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+    private static final int UNITS_PER_ITEM = 1_000_000;
+
+    @Param({"10", "1000", "100000"})
+    int distinctItems;
+
+    @Param({"1", "100"})
+    int quantity;
+
+    private Item[] items;
+
+    private Cart cart;
+
+    @Setup(Level.Trial)
+    public void createItems() {
+        items = Fixtures.items(distinctItems);
+    }
+
+    /**
+     * Rebuilt every iteration so removals never drain a line.
+     */
+    @Setup(Level.Iteration)
+    public void fillCart() {
+        cart = Fixtures.cart(items, UNITS_PER_ITEM);
+    }
+
+    @Benchmark
+    public Cart addItem() {
+        cart.addItem(randomItem(), quantity);
+        return cart;
+    }
+
+    @Benchmark
+    public Cart removeItem() {
+        cart.removeItem(randomItem(), quantity);
+        return cart;
+    }
+
+    private Item randomItem() {
+        return items[ThreadLocalRandom.current().nextInt(items.length)];
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.benchmarks;
+
+import java.math.BigDecimal;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.User;
+
+/**
+ * Builds detached entities for the benchmarks; nothing here touches a
+ * database.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static Item[] items(int count) {
+        Item[] items = new Item[count];
+        for (int i = 0; i < count; i++) {
+            Item item = new Item();
+            item.setId((long) i + 1);
+            item.setName("Item " + i);
+            item.setDescription("Benchmark item " + i);
+            item.setPrice(BigDecimal.valueOf(100 + i % 900, 2));
+            items[i] = item;
+        }
+        return items;
+    }
+
+    /**
+     * A cart holding {@code unitsPerItem} units of every given item, owned by
+     * a user so it can be turned into an order.
+     */
+    static Cart cart(Item[] items, int unitsPerItem) {
+        Cart cart = new Cart();
+        cart.setId(1L);
+        for (Item item : items) {
+            cart.addItem(item, unitsPerItem);
+        }
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("benchmark");
+        user.setCart(cart);
+        cart.setUser(user);
+        return cart;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.demo.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.model.persistence.UserOrder;
+
+/**
+ * Inserting {@code rows} carts the way Hibernate has to for each id strategy,
+ * against in-memory H2: with IDENTITY every row is its own statement whose
+ * generated key is read back, with a pooled sequence one sequence call covers
+ * {@link UserOrder#ID_ALLOCATION_SIZE} ids and the rows go out as one JDBC
+ * batch. In-memory H2 has no network round trip, so against a remote database
+ * the gap is wider than measured here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGenerationBenchmark {
+
+    @Param({"identity", "pooled-sequence"})
+    String strategy;
+
+    @Param({"50", "500"})
+    int rows;
+
+    private Connection connection;
+
+    private PreparedStatement insertWithIdentity;
+
+    private PreparedStatement insertWithId;
+
+    private PreparedStatement nextIdBlock;
+
+    @Setup(Level.Trial)
+    public void createSchema() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:idgeneration;DB_CLOSE_DELAY=-1");
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table cart_identity (id bigint generated by default as identity primary key,"
+                    + " total_minor bigint not null)");
+            statement.execute("create table cart_sequence (id bigint primary key, total_minor bigint not null)");
+            statement.execute("create sequence cart_seq start with 1 increment by " + UserOrder.ID_ALLOCATION_SIZE);
+        }
+        insertWithIdentity = connection.prepareStatement("insert into cart_identity (total_minor) values (?)",
+                Statement.RETURN_GENERATED_KEYS);
+        insertWithId = connection.prepareStatement("insert into cart_sequence (id, total_minor) values (?, ?)");
+        nextIdBlock = connection.prepareStatement("values next value for cart_seq");
+    }
+
+    /**
+     * Keeps the tables, and so their indexes, the same size from one
+     * iteration to the next.
+     */
+    @Setup(Level.Iteration)
+    public void emptyTables() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("truncate table cart_identity");
+            statement.execute("truncate table cart_sequence");
+        }
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public long insert() throws SQLException {
+        long lastId = "identity".equals(strategy) ? insertWithIdentity() : insertWithPooledSequence();
+        connection.commit();
+        return lastId;
+    }
+
+    private long insertWithIdentity() throws SQLException {
+        long id = 0;
+        for (int i = 0; i < rows; i++) {
+            insertWithIdentity.setLong(1, i);
+            insertWithIdentity.executeUpdate();
+            try (ResultSet keys = insertWithIdentity.getGeneratedKeys()) {
+                keys.next();
+                id = keys.getLong(1);
+            }
+        }
+        return id;
+    }
+
+    private long insertWithPooledSequence() throws SQLException {
+        long id = 0;
+        int idsLeft = 0;
+        for (int i = 0; i < rows; i++) {
+            if (idsLeft == 0) {
+                try (ResultSet block = nextIdBlock.executeQuery()) {
+                    block.next();
+                    id = block.getLong(1);
+                }
+                idsLeft = UserOrder.ID_ALLOCATION_SIZE;
+            } else {
+                id++;
+            }
+            idsLeft--;
+            insertWithId.setLong(1, id);
+            insertWithId.setLong(2, i);
+            insertWithId.addBatch();
+            if ((i + 1) % UserOrder.ID_ALLOCATION_SIZE == 0) {
+                insertWithId.executeBatch();
+            }
+        }
+        insertWithId.executeBatch();
+        return id;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.demo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.responses.CartResponse;
+import com.example.demo.model.responses.OrderResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * Writing cart and order responses as JSON: the entities as the endpoints
+ * used to return them against the response DTOs, with a default mapper and
+ * with one configured like the application's (see JacksonConfiguration). The
+ * DTOs leave out null fields themselves, so that part of the gap shows with
+ * either mapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseJsonBenchmark {
+
+    @Param({"5", "100"})
+    int distinctItems;
+
+    @Param({"default", "configured"})
+    String mapper;
+
+    private ObjectWriter writer;
+
+    private Cart cart;
+
+    private UserOrder order;
+
+    @Setup
+    public void createResponses() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        if ("configured".equals(mapper)) {
+            objectMapper.registerModule(new BlackbirdModule());
+        }
+        writer = objectMapper.writer();
+        cart = Fixtures.cart(Fixtures.items(distinctItems), 3);
+        order = UserOrder.createFromCart(cart);
+        order.setId(1L);
+    }
+
+    @Benchmark
+    public byte[] cartEntity() throws JsonProcessingException {
+        return writer.writeValueAsBytes(cart);
+    }
+
+    @Benchmark
+    public byte[] cartResponse() throws JsonProcessingException {
+        return writer.writeValueAsBytes(CartResponse.of(cart));
+    }
+
+    @Benchmark
+    public byte[] orderEntity() throws JsonProcessingException {
+        return writer.writeValueAsBytes(order);
+    }
+
+    @Benchmark
+    public byte[] orderResponse() throws JsonProcessingException {
+        return writer.writeValueAsBytes(OrderResponse.of(order));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.security;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.example.demo.Application;
+import com.example.demo.cache.UserCache;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.UserRepository;
+
+/**
+ * Password checks through {@link CustomAuthenticationManager#authenticate},
+ * including taking a permit from {@link PasswordHashLimiter}, at several BCrypt
+ * costs. The stored hash always has the configured cost, so no re-hashing
+ * happens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BCryptBenchmark {
+
+    private static final String PASSWORD = "benchmark-password";
+
+    @Param({"4", "10", "12"})
+    int strength;
+
+    private CustomAuthenticationManager authenticationManager;
+
+    private ExecutorService passwordHashExecutor;
+
+    @Setup
+    public void createAuthenticationManager() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("benchmark");
+        user.setPassword(encoder.encode(PASSWORD));
+
+        passwordHashExecutor = new Application().passwordHashExecutor(1, 1000);
+
+        UserRepository userRepository = userRepositoryFinding(user);
+        authenticationManager = new CustomAuthenticationManager();
+        authenticationManager.UserRepository = userRepository;
+        authenticationManager.userCache = new UserCache(userRepository, 100, 600);
+        authenticationManager.BCryptPasswordEncoder = encoder;
+        authenticationManager.passwordHashLimiter = new PasswordHashLimiter(0, 1000);
+        authenticationManager.passwordHashExecutor = passwordHashExecutor;
+        authenticationManager.bcryptStrength = strength;
+    }
+
+    @TearDown
+    public void shutdownExecutor() {
+        passwordHashExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public Authentication authenticate() {
+        return authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("benchmark", PASSWORD));
+    }
+
+    /**
+     * A repository whose findByUsername always returns the given user; every
+     * other method returns null.
+     */
+    private static UserRepository userRepositoryFinding(User user) {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class},
+                (proxy, method, args) -> "findByUsername".equals(method.getName()) ? user : null);
+    }
+}
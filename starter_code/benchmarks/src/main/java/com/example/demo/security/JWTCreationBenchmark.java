@@ -0,0 +1,58 @@
+package com.example.demo.security;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Token issuing in {@link JWTAuthenticationFilter#successfulAuthentication}.
+ * Lives in the filter's package to reach the protected method.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JWTCreationBenchmark {
+
+    private JWTAuthenticationFilter authenticationFilter;
+
+    private Authentication authentication;
+
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void createFilter() {
+        authenticationFilter = new JWTAuthenticationFilter(auth -> auth, new LoginRequestParser(new ObjectMapper(), 4096));
+        authentication = new UsernamePasswordAuthenticationToken("benchmark", null, new ArrayList<>());
+        request = new MockHttpServletRequest("POST", "/login");
+    }
+
+    @Benchmark
+    public String createToken() throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        authenticationFilter.successfulAuthentication(request, response, new MockFilterChain(), authentication);
+        return response.getHeader(SecurityConstants.HEADER_STRING);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.security;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Bearer token checks in {@link JWTAuthenticationVerficationFilter}, with the
+ * verification cache enabled ({@code cached}) and with a cache that can hold
+ * nothing ({@code uncached}), which verifies the signature on every request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JWTVerificationBenchmark {
+
+    @Param({"cached", "uncached"})
+    String verification;
+
+    private JWTAuthenticationVerficationFilter verificationFilter;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void createFilterAndToken() throws IOException, ServletException {
+        int cacheSize = "cached".equals(verification) ? 10_000 : 0;
+        verificationFilter = new JWTAuthenticationVerficationFilter(auth -> auth, new JWTVerificationCache(cacheSize));
+
+        MockHttpServletResponse loginResponse = new MockHttpServletResponse();
+        new JWTAuthenticationFilter(auth -> auth, new LoginRequestParser(new ObjectMapper(), 4096))
+                .successfulAuthentication(new MockHttpServletRequest(), loginResponse, new MockFilterChain(),
+                new UsernamePasswordAuthenticationToken("benchmark", null, new ArrayList<>()));
+
+        request = new MockHttpServletRequest("GET", "/api/item");
+        request.addHeader(SecurityConstants.HEADER_STRING, loginResponse.getHeader(SecurityConstants.HEADER_STRING));
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public Authentication verifyToken() throws IOException, ServletException {
+        verificationFilter.doFilterInternal(request, response, (req, res) -> {
+        });
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.loadtest;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The steps a virtual user picks from, with the endpoint each one is reported
+ * under and its weight in the default mix.
+ */
+public enum Action {
+
+    SIGNUP("signup", "POST /api/user/create", 5),
+    LOGIN("login", "POST /login", 5),
+    BROWSE("browse", "GET /api/item", 30),
+    ITEM("item", "GET /api/item/{id}", 15),
+    ADD("add", "POST /api/cart/addToCart", 20),
+    REMOVE("remove", "POST /api/cart/removeFromCart", 10),
+    SUBMIT("submit", "POST /api/order/submit/{username}", 5),
+    HISTORY("history", "GET /api/order/history/{username}", 10);
+
+    private final String key;
+
+    private final String endpoint;
+
+    private final int defaultWeight;
+
+    Action(String key, String endpoint, int defaultWeight) {
+        this.key = key;
+        this.endpoint = endpoint;
+        this.defaultWeight = defaultWeight;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public int getDefaultWeight() {
+        return defaultWeight;
+    }
+
+    public static Action forKey(String key) {
+        for (Action action : values()) {
+            if (action.key.equalsIgnoreCase(key)) {
+                return action;
+            }
+        }
+        throw new IllegalArgumentException("Unknown action '" + key + "', expected one of "
+                + Arrays.toString(values()).toLowerCase(Locale.ROOT));
+    }
+}
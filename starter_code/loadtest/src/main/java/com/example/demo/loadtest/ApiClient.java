@@ -0,0 +1,102 @@
+package com.example.demo.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Thin blocking client for the application's HTTP API, shared by all virtual
+ * users. Every call is timed and recorded in {@link EndpointStats} under its
+ * {@link Action}; any status other than 2xx counts as an error.
+ */
+public class ApiClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient httpClient;
+
+    private final ObjectMapper objectMapper;
+
+    private final String baseUrl;
+
+    private final EndpointStats stats;
+
+    public ApiClient(String baseUrl, ObjectMapper objectMapper, EndpointStats stats) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl;
+        this.stats = stats;
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Sends a GET, with the bearer token if one is given, and returns the
+     * response, or null if the request failed.
+     */
+    public HttpResponse<String> get(Action action, String path, String token) throws InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .GET();
+        return send(action, authorize(request, token));
+    }
+
+    /**
+     * Sends {@code body} as JSON in a POST, with the bearer token if one is
+     * given, and returns the response, or null if the request failed.
+     */
+    public HttpResponse<String> post(Action action, String path, Map<String, Object> body, String token)
+            throws InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(toJson(body)));
+        return send(action, authorize(request, token));
+    }
+
+    private HttpResponse<String> send(Action action, HttpRequest request) throws InterruptedException {
+        long start = System.nanoTime();
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            stats.recordError(action);
+            return null;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (response.statusCode() / 100 != 2) {
+            stats.recordError(action);
+            return null;
+        }
+        stats.recordSuccess(action, elapsed);
+        return response;
+    }
+
+    private static HttpRequest authorize(HttpRequest.Builder request, String token) {
+        if (token != null) {
+            request.header("Authorization", token);
+        }
+        return request.build();
+    }
+
+    private String toJson(Map<String, Object> body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request body cannot be written as JSON", e);
+        }
+    }
+}
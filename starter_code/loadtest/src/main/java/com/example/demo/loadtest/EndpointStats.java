@@ -0,0 +1,99 @@
+package com.example.demo.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency and error counts per endpoint. Latencies of successful requests go
+ * into one HdrHistogram {@link Recorder} per action, in microseconds, so
+ * virtual users can record concurrently without locking; failed requests are
+ * only counted.
+ */
+public class EndpointStats {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final Map<Action, Recorder> recorders = new EnumMap<>(Action.class);
+
+    private final Map<Action, LongAdder> errors = new EnumMap<>(Action.class);
+
+    public EndpointStats() {
+        for (Action action : Action.values()) {
+            recorders.put(action, new Recorder(3));
+            errors.put(action, new LongAdder());
+        }
+    }
+
+    public void recordSuccess(Action action, long elapsedNanos) {
+        recorders.get(action).recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(elapsedNanos)));
+    }
+
+    public void recordError(Action action) {
+        errors.get(action).increment();
+    }
+
+    /**
+     * Drops everything recorded so far, e.g. at the end of the warm-up.
+     */
+    public void reset() {
+        for (Action action : Action.values()) {
+            recorders.get(action).reset();
+            errors.get(action).reset();
+        }
+    }
+
+    /**
+     * Prints one line per endpoint with request count, errors, throughput and
+     * latency percentiles, and writes each endpoint's full percentile
+     * distribution to {@code output} as {@code <action>.hgrm}, in
+     * milliseconds.
+     */
+    public void report(double elapsedSeconds, PrintStream out, Path output) throws IOException {
+        Files.createDirectories(output);
+        Histogram total = new Histogram(3);
+        long totalErrors = 0;
+        out.printf("%-36s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Action action : Action.values()) {
+            Histogram histogram = recorders.get(action).getIntervalHistogram();
+            long errorCount = errors.get(action).sum();
+            if (histogram.getTotalCount() == 0 && errorCount == 0) {
+                continue;
+            }
+            total.add(histogram);
+            totalErrors += errorCount;
+            printLine(out, action.getEndpoint(), histogram, errorCount, elapsedSeconds);
+            writeDistribution(histogram, output.resolve(action.getKey() + ".hgrm"));
+        }
+        printLine(out, "all", total, totalErrors, elapsedSeconds);
+        writeDistribution(total, output.resolve("all.hgrm"));
+    }
+
+    private static void printLine(PrintStream out, String endpoint, Histogram histogram, long errorCount,
+            double elapsedSeconds) {
+        out.printf("%-36s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                endpoint,
+                histogram.getTotalCount(),
+                errorCount,
+                histogram.getTotalCount() / elapsedSeconds,
+                histogram.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                histogram.getMaxValue() / MICROS_PER_MILLI);
+    }
+
+    private static void writeDistribution(Histogram histogram, Path file) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, "UTF-8")) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.demo.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line options of the load test. Options are given as
+ * {@code --name=value}:
+ * <ul>
+ * <li>{@code users} - concurrent virtual users (default 50)</li>
+ * <li>{@code duration} - measured seconds (default 60)</li>
+ * <li>{@code warmup} - seconds run before measuring starts (default 10)</li>
+ * <li>{@code think-time-ms} - pause between a user's requests (default 0)</li>
+ * <li>{@code mix} - action weights, e.g. {@code browse:40,add:20,submit:5};
+ * actions left out keep their default weight, weight 0 disables one</li>
+ * <li>{@code target} - base URL of a running instance; without it the
+ * application is started in-process on a random port with its in-memory H2
+ * database</li>
+ * <li>{@code output} - directory for the histogram files (default
+ * {@code target/loadtest})</li>
+ * </ul>
+ * Any other {@code --name=value} argument is handed to the embedded
+ * application, e.g. {@code --security.bcrypt.strength=4}.
+ */
+public class LoadTestOptions {
+
+    private int users = 50;
+
+    private Duration duration = Duration.ofSeconds(60);
+
+    private Duration warmup = Duration.ofSeconds(10);
+
+    private long thinkTimeMillis;
+
+    private final Map<Action, Integer> mix = new EnumMap<>(Action.class);
+
+    private String target;
+
+    private Path output = Paths.get("target", "loadtest");
+
+    private final List<String> applicationArgs = new ArrayList<>();
+
+    public static LoadTestOptions parse(String... args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (Action action : Action.values()) {
+            options.mix.put(action, action.getDefaultWeight());
+        }
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got '" + arg + "'");
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "users":
+                    options.users = positive(name, Integer.parseInt(value));
+                    break;
+                case "duration":
+                    options.duration = Duration.ofSeconds(positive(name, Integer.parseInt(value)));
+                    break;
+                case "warmup":
+                    options.warmup = Duration.ofSeconds(Long.parseLong(value));
+                    break;
+                case "think-time-ms":
+                    options.thinkTimeMillis = Long.parseLong(value);
+                    break;
+                case "mix":
+                    options.parseMix(value);
+                    break;
+                case "target":
+                    options.target = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                    break;
+                case "output":
+                    options.output = Paths.get(value);
+                    break;
+                default:
+                    options.applicationArgs.add(arg);
+            }
+        }
+        if (options.mix.values().stream().allMatch(weight -> weight == 0)) {
+            throw new IllegalArgumentException("At least one action needs a weight above 0");
+        }
+        return options;
+    }
+
+    private void parseMix(String value) {
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected action:weight but got '" + entry + "'");
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weight of " + parts[0] + " must not be negative");
+            }
+            mix.put(Action.forKey(parts[0].trim()), weight);
+        }
+    }
+
+    private static int positive(String name, int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be greater than 0");
+        }
+        return value;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public long getThinkTimeMillis() {
+        return thinkTimeMillis;
+    }
+
+    public Map<Action, Integer> getMix() {
+        return mix;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public Path getOutput() {
+        return output;
+    }
+
+    public List<String> getApplicationArgs() {
+        return applicationArgs;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.demo.loadtest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.Application;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Entry point of loadtest.jar. Starts the application in-process on a random
+ * port with its in-memory H2 database (unless {@code --target} points at a
+ * running instance), lets the configured number of {@link VirtualUser}s loose
+ * on it, and reports throughput and latency percentiles per endpoint once the
+ * measured period is over. See {@link LoadTestOptions} for the options.
+ */
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.getTarget();
+        if (baseUrl == null) {
+            context = startApplication(options);
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        }
+        try {
+            run(options, baseUrl);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(LoadTestOptions options) {
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("server.port", 0);
+        defaults.put("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER");
+        /**
+         * Per-request INFO logging would drown the report; pass
+         * --logging.level.com.example.demo=INFO to measure with it
+         */
+        defaults.put("logging.level.com.example.demo", "WARN");
+        SpringApplication application = new SpringApplication(Application.class);
+        application.setDefaultProperties(defaults);
+        return application.run(options.getApplicationArgs().toArray(new String[0]));
+    }
+
+    private static void run(LoadTestOptions options, String baseUrl) throws Exception {
+        EndpointStats stats = new EndpointStats();
+        ApiClient client = new ApiClient(baseUrl, new ObjectMapper(), stats);
+        AtomicBoolean running = new AtomicBoolean(true);
+        String accountPrefix = "load-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService users = Executors.newFixedThreadPool(options.getUsers(),
+                runnable -> new Thread(runnable, "virtual-user-" + threadCount.incrementAndGet()));
+        for (int i = 0; i < options.getUsers(); i++) {
+            users.execute(new VirtualUser(client, options, running, accountPrefix));
+        }
+
+        System.out.printf("Load test against %s with %d users, mix %s%n", baseUrl, options.getUsers(), options.getMix());
+        System.out.printf("Warming up for %ds%n", options.getWarmup().getSeconds());
+        sleep(options.getWarmup());
+        stats.reset();
+
+        System.out.printf("Measuring for %ds%n", options.getDuration().getSeconds());
+        long start = System.nanoTime();
+        sleep(options.getDuration());
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        running.set(false);
+        users.shutdown();
+        if (!users.awaitTermination(1, TimeUnit.MINUTES)) {
+            users.shutdownNow();
+        }
+
+        stats.report(elapsedSeconds, System.out, options.getOutput());
+        System.out.printf("Percentile distributions written to %s%n", options.getOutput().toAbsolutePath());
+    }
+
+    private static void sleep(Duration duration) throws InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(duration.toMillis());
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.demo.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * One simulated customer. It signs up and logs in, then keeps picking actions
+ * at random according to the configured mix until told to stop, waiting for
+ * each response before sending the next request (closed model).
+ *
+ * A {@code signup} action registers a fresh account and logs in with it, so
+ * later cart and order calls run against the new customer.
+ *
+ * The user keeps track of what its cart holds from the cart calls that
+ * succeeded, and skips a {@code submit} picked while the cart is empty: the
+ * application rejects such an order with 400, which would otherwise be
+ * reported as an error.
+ */
+public class VirtualUser implements Runnable {
+
+    private static final String PASSWORD = "loadtest-password";
+
+    private static final AtomicLong ACCOUNT_SEQUENCE = new AtomicLong();
+
+    private final ApiClient client;
+
+    private final Action[] actions;
+
+    private final int[] cumulativeWeights;
+
+    private final long thinkTimeMillis;
+
+    private final AtomicBoolean running;
+
+    private final String accountPrefix;
+
+    private final List<Long> itemIds = new ArrayList<>();
+
+    /**
+     * Units of each item in the cart, as far as the successful cart calls tell
+     */
+    private final Map<Long, Integer> cart = new HashMap<>();
+
+    private String username;
+
+    private String token;
+
+    public VirtualUser(ApiClient client, LoadTestOptions options, AtomicBoolean running, String accountPrefix) {
+        this.client = client;
+        this.thinkTimeMillis = options.getThinkTimeMillis();
+        this.running = running;
+        this.accountPrefix = accountPrefix;
+        this.actions = Action.values();
+        this.cumulativeWeights = new int[actions.length];
+        int sum = 0;
+        for (int i = 0; i < actions.length; i++) {
+            sum += options.getMix().getOrDefault(actions[i], 0);
+            cumulativeWeights[i] = sum;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running.get() && (username == null || token == null)) {
+                signup();
+            }
+            while (running.get() && itemIds.isEmpty()) {
+                browse();
+            }
+            while (running.get()) {
+                perform(nextAction());
+                if (thinkTimeMillis > 0) {
+                    Thread.sleep(thinkTimeMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Action nextAction() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return actions[i];
+            }
+        }
+        throw new IllegalStateException("No action for weight " + pick);
+    }
+
+    private void perform(Action action) throws InterruptedException {
+        switch (action) {
+            case SIGNUP:
+                signup();
+                break;
+            case LOGIN:
+                login();
+                break;
+            case BROWSE:
+                browse();
+                break;
+            case ITEM:
+                client.get(Action.ITEM, "/api/item/" + randomItemId(), token);
+                break;
+            case ADD:
+                addToCart();
+                break;
+            case REMOVE:
+                removeFromCart();
+                break;
+            case SUBMIT:
+                submit();
+                break;
+            case HISTORY:
+                client.get(Action.HISTORY, "/api/order/history/" + username, token);
+                break;
+            default:
+                throw new IllegalStateException("Unhandled action " + action);
+        }
+    }
+
+    private void signup() throws InterruptedException {
+        String candidate = accountPrefix + ACCOUNT_SEQUENCE.incrementAndGet();
+        Map<String, Object> body = new HashMap<>();
+        body.put("username", candidate);
+        body.put("password", PASSWORD);
+        body.put("confirmPassword", PASSWORD);
+        if (client.post(Action.SIGNUP, "/api/user/create", body, null) != null) {
+            username = candidate;
+            token = null;
+            cart.clear();
+            login();
+        }
+    }
+
+    private void login() throws InterruptedException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("username", username);
+        body.put("password", PASSWORD);
+        HttpResponse<String> response = client.post(Action.LOGIN, "/login", body, null);
+        if (response != null) {
+            token = response.headers().firstValue("Authorization").orElse(token);
+        }
+    }
+
+    private void browse() throws InterruptedException {
+        HttpResponse<String> response = client.get(Action.BROWSE, "/api/item", token);
+        if (response != null && itemIds.isEmpty()) {
+            try {
+                for (JsonNode item : client.getObjectMapper().readTree(response.body())) {
+                    itemIds.add(item.get("id").asLong());
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Item list is not valid JSON", e);
+            }
+        }
+    }
+
+    private void addToCart() throws InterruptedException {
+        long itemId = randomItemId();
+        int quantity = randomQuantity();
+        if (client.post(Action.ADD, "/api/cart/addToCart", cartRequest(itemId, quantity), token) != null) {
+            cart.merge(itemId, quantity, Integer::sum);
+        }
+    }
+
+    private void removeFromCart() throws InterruptedException {
+        long itemId = randomItemId();
+        int quantity = randomQuantity();
+        if (client.post(Action.REMOVE, "/api/cart/removeFromCart", cartRequest(itemId, quantity), token) != null) {
+            cart.computeIfPresent(itemId, (id, held) -> held > quantity ? held - quantity : null);
+        }
+    }
+
+    private void submit() throws InterruptedException {
+        if (cart.isEmpty()) {
+            return;
+        }
+        if (client.post(Action.SUBMIT, "/api/order/submit/" + username, null, token) != null) {
+            cart.clear();
+        }
+    }
+
+    private Map<String, Object> cartRequest(long itemId, int quantity) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("username", username);
+        body.put("itemId", itemId);
+        body.put("quantity", quantity);
+        return body;
+    }
+
+    private static int randomQuantity() {
+        return 1 + ThreadLocalRandom.current().nextInt(3);
+    }
+
+    private long randomItemId() {
+        return itemIds.get(ThreadLocalRandom.current().nextInt(itemIds.size()));
+    }
+}
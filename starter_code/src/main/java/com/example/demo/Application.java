@@ -1,11 +1,22 @@
 package com.example.demo;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 
@@ -14,9 +25,45 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 @SpringBootApplication(exclude = {SecurityAutoConfiguration.class})
 public class Application {
 	@Bean
-	public BCryptPasswordEncoder bCryptPasswordEncoder(){
-		return new BCryptPasswordEncoder();
+	public BCryptPasswordEncoder bCryptPasswordEncoder(@Value("${security.bcrypt.strength:10}") int strength){
+		return new BCryptPasswordEncoder(strength);
+	}
+
+	/**
+	 * Bounded pool that re-hashes passwords stored with an outdated BCrypt cost
+	 * after the login that found them has been answered. It runs at most
+	 * {@code security.bcrypt.rehash-threads} at a time and drops re-hashes once
+	 * {@code security.bcrypt.queue-capacity} are pending; a dropped one is
+	 * retried on the next login. Login checks themselves are bounded by
+	 * {@link com.example.demo.security.PasswordHashLimiter}.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService passwordHashExecutor(@Value("${security.bcrypt.rehash-threads:1}") int threads,
+			@Value("${security.bcrypt.queue-capacity:100}") int queueCapacity) {
+		int poolSize = Math.max(threads, 1);
+		AtomicInteger threadCount = new AtomicInteger();
+		return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				runnable -> {
+					Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.AbortPolicy());
 	}
+
+	/**
+	 * Executor for async MVC work such as writing the NDJSON streams. Boot's
+	 * own is skipped because {@link #passwordHashExecutor} is an Executor too,
+	 * which would leave MVC on an unbounded thread-per-task default; sized by
+	 * the usual {@code spring.task.execution.*} properties.
+	 */
+	@Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+	@ConditionalOnProperty(name = "app.virtual-threads.enabled", havingValue = "false", matchIfMissing = true)
+	public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder taskExecutorBuilder) {
+		return taskExecutorBuilder.build();
+	}
+
 	public static void main(String[] args) {
 		SpringApplication.run(Application.class, args);
 	}
@@ -0,0 +1,29 @@
+package com.example.demo;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * Settings for the single ObjectMapper Spring Boot builds and shares between
+ * Spring MVC and any component that injects it. Code that needs JSON should
+ * inject that mapper, or a reader or writer derived from it, rather than
+ * create its own, so serializers are built and cached once.
+ *
+ * Null handling is left to each response type, so entities other endpoints
+ * already return keep writing their null fields.
+ */
+@Configuration
+public class JacksonConfiguration {
+
+    /**
+     * Replaces reflective getter and constructor calls with generated lambdas;
+     * registered with the shared mapper because it is a {@link Module} bean.
+     */
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+/**
+ * Opt-in mode, enabled with {@code app.virtual-threads.enabled=true}, that
+ * serves every request on its own virtual thread instead of Tomcat's bounded
+ * worker pool. Controllers, and the JPA calls they make, then block a cheap
+ * virtual thread rather than a platform thread with its own stack, so the
+ * number of concurrent requests is limited by
+ * {@code server.tomcat.max-connections} and the JDBC pool instead of
+ * {@code server.tomcat.threads.max}.
+ *
+ * Needs a JDK with final virtual threads (21 or later). The executor is looked
+ * up reflectively so the application still builds and runs on Java 11; turning
+ * the mode on with an older JDK fails startup. Logins still hash at most
+ * {@code security.bcrypt.threads} at a time, see
+ * {@link com.example.demo.security.PasswordHashLimiter}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        log.info("Serving requests on virtual threads (Java {})", Runtime.version().feature());
+        return executor;
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(
+            ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    /**
+     * Also runs async MVC work, such as the NDJSON item stream, on virtual
+     * threads
+     */
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("app.virtual-threads.enabled needs Java 21 or later, running on Java "
+                    + Runtime.version().feature(), e);
+        } catch (InvocationTargetException e) {
+            /**
+             * Java 19 and 20 have the method but refuse it without --enable-preview
+             */
+            throw new IllegalStateException("Virtual threads are not available on Java "
+                    + Runtime.version().feature(), e.getCause());
+        }
+    }
+}
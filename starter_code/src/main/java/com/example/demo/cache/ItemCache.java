@@ -0,0 +1,231 @@
+package com.example.demo.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Read-through, in-process cache in front of {@link ItemRepository}.
+ *
+ * Items by id and lookups by name are kept in LRU maps bounded by
+ * {@code item.cache.max-size}. The full catalog listing counts against the
+ * same bound: it is only cached while the catalog has at most that many
+ * items, and otherwise read from the database each time. Every entry
+ * expires {@code item.cache.ttl-seconds} after it was loaded. Committed item
+ * writes evict the affected entries through {@link ItemChangedEvent}, and
+ * {@link #evict(Long)} / {@link #evictAll()} are available to anything that
+ * changes the catalog behind JPA's back.
+ */
+@Component
+public class ItemCache implements MeterBinder {
+
+    private final ItemRepository itemRepository;
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    private final Map<Long, Entry<Item>> itemsById;
+
+    private final Map<String, Entry<List<Item>>> itemsByName;
+
+    private volatile Entry<List<Item>> allItems;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ItemCache(ItemRepository itemRepository,
+            @Value("${item.cache.max-size:10000}") int maxSize,
+            @Value("${item.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.itemRepository = itemRepository;
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.itemsById = lruMap(maxSize);
+        this.itemsByName = lruMap(maxSize);
+    }
+
+    public Optional<Item> findById(Long id) {
+        Entry<Item> entry = itemsById.get(id);
+        if (isFresh(entry)) {
+            hits.incrementAndGet();
+            return Optional.of(entry.value);
+        }
+        misses.incrementAndGet();
+        Optional<Item> item = itemRepository.findById(id);
+        item.ifPresent(this::put);
+        return item;
+    }
+
+    /**
+     * Returns the items with the given ids that exist, loading every id that
+     * is not cached with a single query.
+     */
+    public List<Item> findAllById(Collection<Long> ids) {
+        List<Item> found = new ArrayList<>(ids.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Entry<Item> entry = itemsById.get(id);
+            if (isFresh(entry)) {
+                found.add(entry.value);
+            } else {
+                missing.add(id);
+            }
+        }
+        hits.addAndGet(found.size());
+        if (!missing.isEmpty()) {
+            misses.addAndGet(missing.size());
+            for (Item item : itemRepository.findAllById(missing)) {
+                put(item);
+                found.add(item);
+            }
+        }
+        return found;
+    }
+
+    public List<Item> findAll() {
+        Entry<List<Item>> entry = allItems;
+        if (isFresh(entry)) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        misses.incrementAndGet();
+        List<Item> items = Collections.unmodifiableList(new ArrayList<>(itemRepository.findAll()));
+        if (items.size() > maxSize) {
+            /** Caching it would push every other item out of itemsById as well */
+            return items;
+        }
+        items.forEach(this::put);
+        allItems = new Entry<>(items, expiry());
+        return items;
+    }
+
+    /**
+     * Returns the items with exactly the given name; empty results are not
+     * cached.
+     */
+    public List<Item> findByName(String name) {
+        Entry<List<Item>> entry = itemsByName.get(name);
+        if (isFresh(entry)) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        misses.incrementAndGet();
+        List<Item> items = itemRepository.findByName(name);
+        if (items == null || items.isEmpty()) {
+            return items;
+        }
+        items = Collections.unmodifiableList(new ArrayList<>(items));
+        items.forEach(this::put);
+        itemsByName.put(name, new Entry<>(items, expiry()));
+        return items;
+    }
+
+    /**
+     * Drops the item with the given id along with every cached listing, since
+     * a changed name or price can affect any of them.
+     */
+    public void evict(Long id) {
+        itemsById.remove(id);
+        itemsByName.clear();
+        allItems = null;
+        evictions.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        evict(event.getItemId());
+    }
+
+    public void evictAll() {
+        itemsById.clear();
+        itemsByName.clear();
+        allItems = null;
+        evictions.incrementAndGet();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public int size() {
+        return itemsById.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get)
+                .tag("cache", "items").tag("result", "hit")
+                .description("Item lookups answered from the cache")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get)
+                .tag("cache", "items").tag("result", "miss")
+                .description("Item lookups that went to the database")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, AtomicLong::get)
+                .tag("cache", "items")
+                .description("Explicit invalidations of the item cache")
+                .register(registry);
+        Gauge.builder("cache.size", this, ItemCache::size)
+                .tag("cache", "items")
+                .description("Items currently cached by id")
+                .register(registry);
+    }
+
+    private void put(Item item) {
+        itemsById.put(item.getId(), new Entry<>(item, expiry()));
+    }
+
+    private long expiry() {
+        return System.nanoTime() + ttlNanos;
+    }
+
+    private static boolean isFresh(Entry<?> entry) {
+        return entry != null && entry.expiresAt - System.nanoTime() > 0;
+    }
+
+    private static <K, V> Map<K, V> lruMap(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
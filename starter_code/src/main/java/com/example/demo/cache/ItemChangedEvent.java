@@ -0,0 +1,39 @@
+package com.example.demo.cache;
+
+/**
+ * Published whenever an {@link com.example.demo.model.persistence.Item} is
+ * inserted, updated or deleted, with the name it was written with so listeners
+ * need not read it back. Listeners use {@code @TransactionalEventListener} so
+ * they only see committed changes.
+ */
+public class ItemChangedEvent {
+
+    private final Long itemId;
+
+    private final String name;
+
+    public ItemChangedEvent(Long itemId) {
+        this(itemId, null);
+    }
+
+    public ItemChangedEvent(Long itemId, String name) {
+        this.itemId = itemId;
+        this.name = name;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    /**
+     * The item's name after the change, or null if the item was deleted
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemChangedEvent{" + "itemId=" + itemId + ", name=" + name + '}';
+    }
+}
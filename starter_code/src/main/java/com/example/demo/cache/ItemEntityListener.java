@@ -0,0 +1,36 @@
+package com.example.demo.cache;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.example.demo.model.persistence.Item;
+
+/**
+ * JPA entity listener on {@link Item} that turns every write into an
+ * {@link ItemChangedEvent}. Hibernate obtains it through Spring's bean
+ * container, which is what wires the publisher in.
+ */
+public class ItemEntityListener {
+
+    @Autowired
+    private ApplicationEventPublisher publisher;
+
+    @PostPersist
+    @PostUpdate
+    public void itemChanged(Item item) {
+        if (publisher != null) {
+            publisher.publishEvent(new ItemChangedEvent(item.getId(), item.getName()));
+        }
+    }
+
+    @PostRemove
+    public void itemRemoved(Item item) {
+        if (publisher != null) {
+            publisher.publishEvent(new ItemChangedEvent(item.getId()));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.demo.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.model.persistence.repositories.ItemRepository;
+
+/**
+ * Sorted, in-memory index of item names used for case-insensitive and prefix
+ * (autocomplete) lookups, which the database could only answer with a scan.
+ *
+ * The index maps lower-cased names to item ids. It is built once from a
+ * streamed id/name query, at startup or on first use, and afterwards kept up
+ * to date one item at a time from committed {@link ItemChangedEvent}s, using
+ * the name the event carries. Changes committed while the index is being
+ * built are held back and applied once the build is done, so they win over
+ * the possibly older rows it read.
+ */
+@Component
+public class ItemNameIndex {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ItemRepository itemRepository;
+
+    private final TransactionOperations transactionOperations;
+
+    private final NavigableMap<String, Set<Long>> idsByName = new ConcurrentSkipListMap<>();
+
+    private final Map<Long, String> nameById = new ConcurrentHashMap<>();
+
+    private final Object loadLock = new Object();
+
+    private volatile boolean loaded;
+
+    /**
+     * Changes that arrived while the index was being built, in arrival order;
+     * null outside a build. Guarded by {@code this}.
+     */
+    private List<ItemChangedEvent> changesDuringLoad;
+
+    public ItemNameIndex(ItemRepository itemRepository, TransactionOperations transactionOperations) {
+        this.itemRepository = itemRepository;
+        this.transactionOperations = transactionOperations;
+    }
+
+    /**
+     * Returns the ids of the items whose name equals {@code name}, ignoring
+     * case.
+     */
+    public List<Long> findIdsByNameIgnoreCase(String name) {
+        ensureLoaded();
+        Set<Long> ids = idsByName.get(normalize(name));
+        return ids == null ? Collections.emptyList() : new ArrayList<>(ids);
+    }
+
+    /**
+     * Returns the ids of at most {@code limit} items whose name starts with
+     * {@code prefix}, ignoring case, ordered by name.
+     */
+    public List<Long> findIdsByNamePrefix(String prefix, int limit) {
+        ensureLoaded();
+        String from = normalize(prefix);
+        List<Long> result = new ArrayList<>();
+        for (Map.Entry<String, Set<Long>> entry : idsByName.tailMap(from, true).entrySet()) {
+            if (!entry.getKey().startsWith(from)) {
+                break;
+            }
+            for (Long id : entry.getValue()) {
+                if (result.size() == limit) {
+                    return result;
+                }
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return nameById.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (loaded) {
+                return;
+            }
+            synchronized (this) {
+                changesDuringLoad = new ArrayList<>();
+            }
+            try {
+                transactionOperations.execute(status -> {
+                    try (Stream<Object[]> rows = itemRepository.streamIdsAndNames()) {
+                        rows.forEach(row -> index((Long) row[0], (String) row[1]));
+                    }
+                    return null;
+                });
+                synchronized (this) {
+                    changesDuringLoad.forEach(this::apply);
+                    loaded = true;
+                }
+            } finally {
+                synchronized (this) {
+                    changesDuringLoad = null;
+                }
+            }
+            log.info("Item name index built with {} items", nameById.size());
+        }
+    }
+
+    /**
+     * Before the index is built a change is ignored, since the build will
+     * read it anyway
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onItemChanged(ItemChangedEvent event) {
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(event);
+        } else if (loaded) {
+            apply(event);
+        }
+    }
+
+    private void apply(ItemChangedEvent event) {
+        unindex(event.getItemId());
+        if (event.getName() != null) {
+            index(event.getItemId(), event.getName());
+        }
+    }
+
+    private void index(Long id, String name) {
+        String key = normalize(name);
+        nameById.put(id, key);
+        idsByName.computeIfAbsent(key, k -> new CopyOnWriteArraySet<>()).add(id);
+    }
+
+    private void unindex(Long id) {
+        String key = nameById.remove(id);
+        if (key == null) {
+            return;
+        }
+        Set<Long> ids = idsByName.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                idsByName.remove(key);
+            }
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
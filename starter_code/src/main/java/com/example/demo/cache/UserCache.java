@@ -0,0 +1,157 @@
+package com.example.demo.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.UserRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Username to user id and password hash, in front of
+ * {@link UserRepository#findByUsername}. Authentication of a cached user needs
+ * no query at all, and controllers load a cached user by primary key, which
+ * JPA answers from the persistence context when the user is already loaded.
+ *
+ * Entries are kept in an LRU map bounded by {@code user.cache.max-size} and
+ * expire {@code user.cache.ttl-seconds} after they were loaded; unknown
+ * usernames are not cached. Anything that creates a user or changes a
+ * password must call {@link #invalidate(String)}. A max size of 0 turns the
+ * cache off.
+ */
+@Component
+public class UserCache implements MeterBinder {
+
+    private final UserRepository userRepository;
+
+    private final long ttlNanos;
+
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    public UserCache(UserRepository userRepository,
+            @Value("${user.cache.max-size:10000}") int maxSize,
+            @Value("${user.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Returns the id and password hash of the user, or null if there is no
+     * such user.
+     */
+    public UserCredentials findCredentials(String username) {
+        Entry entry = entries.get(username);
+        if (isFresh(entry)) {
+            hits.incrementAndGet();
+            return entry.credentials;
+        }
+        misses.incrementAndGet();
+        User user = userRepository.findByUsername(username);
+        return user == null ? null : put(user);
+    }
+
+    /**
+     * Returns the user entity, or null if there is no such user. A cached
+     * username costs a primary-key lookup instead of a query by username.
+     */
+    public User findUser(String username) {
+        Entry entry = entries.get(username);
+        if (isFresh(entry)) {
+            Optional<User> user = userRepository.findById(entry.credentials.getUserId());
+            if (user.isPresent()) {
+                hits.incrementAndGet();
+                return user.get();
+            }
+            invalidate(username);
+        }
+        misses.incrementAndGet();
+        User user = userRepository.findByUsername(username);
+        if (user != null) {
+            put(user);
+        }
+        return user;
+    }
+
+    public void invalidate(String username) {
+        if (entries.remove(username) != null) {
+            evictions.incrementAndGet();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get)
+                .tag("cache", "users").tag("result", "hit")
+                .description("Username lookups answered from the cache")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get)
+                .tag("cache", "users").tag("result", "miss")
+                .description("Username lookups that went to the database")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, AtomicLong::get)
+                .tag("cache", "users")
+                .description("Explicit invalidations of the user cache")
+                .register(registry);
+        Gauge.builder("cache.size", this, UserCache::size)
+                .tag("cache", "users")
+                .description("Usernames currently cached")
+                .register(registry);
+    }
+
+    private UserCredentials put(User user) {
+        UserCredentials credentials = new UserCredentials(user.getId(), user.getUsername(), user.getPassword());
+        entries.put(user.getUsername(), new Entry(credentials, System.nanoTime() + ttlNanos));
+        return credentials;
+    }
+
+    private static boolean isFresh(Entry entry) {
+        return entry != null && entry.expiresAt - System.nanoTime() > 0;
+    }
+
+    private static final class Entry {
+
+        private final UserCredentials credentials;
+
+        private final long expiresAt;
+
+        private Entry(UserCredentials credentials, long expiresAt) {
+            this.credentials = credentials;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.cache;
+
+/**
+ * What {@link UserCache} keeps per username: the user's id and password hash,
+ * enough to authenticate without a query and to load the user by primary key.
+ */
+public final class UserCredentials {
+
+    private final long userId;
+
+    private final String username;
+
+    private final String passwordHash;
+
+    public UserCredentials(long userId, String username, String passwordHash) {
+        this.userId = userId;
+        this.username = username;
+        this.passwordHash = passwordHash;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    @Override
+    public String toString() {
+        return "UserCredentials{" + "userId=" + userId + ", username=" + username + '}';
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.demo.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.example.demo.model.persistence.repositories.UserRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Bloom filter over every username, so signup can tell that a name is free
+ * without a query. {@link #mightExist(String)} returning false is definite;
+ * returning true only means the database has to be asked. Names are added
+ * when a user is created, and never removed, as users are never deleted.
+ *
+ * The filter is sized for {@code user.filter.expected-users} names at a false
+ * positive rate of {@code user.filter.false-positive-rate}; past that it keeps
+ * working, with a rising rate. It is built from a streamed username query at
+ * startup or on first use. The unique constraint on the username column
+ * remains the final word.
+ */
+@Component
+public class UsernameFilter implements MeterBinder {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final UserRepository userRepository;
+
+    private final TransactionOperations transactionOperations;
+
+    private final AtomicLongArray words;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    private final AtomicLong definitelyAbsent = new AtomicLong();
+
+    private final AtomicLong mightExist = new AtomicLong();
+
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    private volatile boolean loaded;
+
+    public UsernameFilter(UserRepository userRepository, TransactionOperations transactionOperations,
+            @Value("${user.filter.expected-users:1000000}") long expectedUsers,
+            @Value("${user.filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.transactionOperations = transactionOperations;
+        long bits = (long) Math.ceil(-expectedUsers * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.words = new AtomicLongArray((int) Math.max(1, (bits + 63) / 64));
+        this.bitCount = words.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / Math.max(1, expectedUsers) * Math.log(2)));
+    }
+
+    /**
+     * False if no user has this name, true if one may have it.
+     */
+    public boolean mightExist(String username) {
+        ensureLoaded();
+        long hash = hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                definitelyAbsent.incrementAndGet();
+                return false;
+            }
+        }
+        mightExist.incrementAndGet();
+        return true;
+    }
+
+    public void add(String username) {
+        long hash = hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    /**
+     * Records that the database did not have a name the filter flagged, to
+     * keep an eye on the observed false positive rate.
+     */
+    public void falsePositive() {
+        falsePositives.incrementAndGet();
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            long[] count = new long[1];
+            transactionOperations.execute(status -> {
+                try (Stream<String> usernames = userRepository.streamUsernames()) {
+                    usernames.forEach(username -> {
+                        add(username);
+                        count[0]++;
+                    });
+                }
+                return null;
+            });
+            loaded = true;
+            log.info("Username filter built with {} users, {} bits, {} hashes", count[0], bitCount, hashCount);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.filter.checks", definitelyAbsent, AtomicLong::get)
+                .tag("result", "absent")
+                .description("Signup username checks answered without a query")
+                .register(registry);
+        FunctionCounter.builder("user.filter.checks", mightExist, AtomicLong::get)
+                .tag("result", "maybe")
+                .description("Signup username checks that needed a query")
+                .register(registry);
+        FunctionCounter.builder("user.filter.false.positives", falsePositives, AtomicLong::get)
+                .description("Flagged usernames the database did not have")
+                .register(registry);
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units, finished with the MurmurHash3
+     * mixer so both 32-bit halves are usable as independent hashes
+     */
+    private static long hash(String username) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < username.length(); i++) {
+            hash ^= username.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.cart;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Serializes changes to one user's cart. Without it, two concurrent requests
+ * for the same user both read the cart, change it in memory and save it, and
+ * one of the updates is lost.
+ *
+ * Users are hashed onto a fixed number of {@code cart.lock.stripes} locks, so
+ * memory stays bounded however many users there are. Requests for different
+ * users run in parallel unless they happen to share a stripe. Callers load the
+ * cart, change it and commit inside {@link #withLock}, and serialize the
+ * response after the lock is released.
+ *
+ * The locks are per instance; they do not coordinate several instances of the
+ * application.
+ */
+@Component
+public class CartLocks implements MeterBinder {
+
+    private final ReentrantLock[] stripes;
+
+    private volatile Timer waitTimer;
+
+    public CartLocks(@Value("${cart.lock.stripes:64}") int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("cart.lock.stripes must be positive, was " + stripes);
+        }
+        /**
+         * Round up to a power of two so a stripe is picked with a mask
+         */
+        int size = Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new ReentrantLock[Math.max(1, size)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Runs {@code action} holding the lock for {@code username}'s cart and
+     * returns its result.
+     */
+    public <T> T withLock(String username, Supplier<T> action) {
+        ReentrantLock lock = stripeFor(username);
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            Timer timer = waitTimer;
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    private ReentrantLock stripeFor(String username) {
+        int h = username == null ? 0 : username.hashCode();
+        /**
+         * Spread the high bits so usernames that differ only at the end do
+         * not all land on the same stripe
+         */
+        h ^= h >>> 16;
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        waitTimer = Timer.builder("cart.lock.wait")
+                .description("Time spent waiting for a cart lock")
+                .register(registry);
+    }
+}
@@ -1,23 +1,32 @@
 package com.example.demo.controllers;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.IntStream;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.cache.ItemCache;
+import com.example.demo.cache.UserCache;
+import com.example.demo.cart.CartLocks;
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.Item;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.CartRepository;
-import com.example.demo.model.persistence.repositories.ItemRepository;
-import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.CartOperation;
+import com.example.demo.model.requests.ModifyCartBatchRequest;
 import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.model.responses.CartResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,50 +37,124 @@ public class CartController {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     @Autowired
-    private UserRepository userRepository;
+    private UserCache userCache;
 
     @Autowired
     private CartRepository cartRepository;
 
     @Autowired
-    private ItemRepository itemRepository;
+    private ItemCache itemCache;
 
+    @Autowired
+    private CartLocks cartLocks;
+
+    @Autowired
+    private TransactionOperations transactionOperations;
+
+    /**
+     * The cart is read, changed and saved in one transaction under the user's
+     * cart lock; the response is written after the lock is released.
+     */
     @PostMapping("/addToCart")
-    public ResponseEntity<Cart> addTocart(@RequestBody ModifyCartRequest request) {
-        User user = userRepository.findByUsername(request.getUsername());
+    public ResponseEntity<CartResponse> addTocart(@RequestBody ModifyCartRequest request) {
+        if (request.getQuantity() <= 0) {
+            log.warn("Add to cart rejected - quantity must be positive, username : {}", request.getUsername());
+            return ResponseEntity.badRequest().build();
+        }
+        return cartLocks.withLock(request.getUsername(), () -> transactionOperations.execute(status -> add(request)));
+    }
+
+    @PostMapping("/removeFromCart")
+    public ResponseEntity<CartResponse> removeFromcart(@RequestBody ModifyCartRequest request) {
+        if (request.getQuantity() <= 0) {
+            log.warn("Remove from cart rejected - quantity must be positive, username : {}", request.getUsername());
+            return ResponseEntity.badRequest().build();
+        }
+        return cartLocks.withLock(request.getUsername(), () -> transactionOperations.execute(status -> remove(request)));
+    }
+
+    /**
+     * Applies a list of add/remove operations to a user's cart in a single
+     * transaction: one user lookup, one query for all referenced items and one
+     * flush, however many operations are sent. The transaction runs inside
+     * the user's cart lock, so it commits before the lock is released.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<CartResponse> modifyCart(@RequestBody ModifyCartBatchRequest request) {
+        List<CartOperation> operations = request.getOperations();
+        if (operations == null
+                || operations.stream().anyMatch(op -> op.getAction() == null || op.getQuantity() <= 0)) {
+            log.warn("Cart batch rejected - every operation needs an action and a positive quantity, username : {}",
+                    request.getUsername());
+            return ResponseEntity.badRequest().build();
+        }
+        return cartLocks.withLock(request.getUsername(),
+                () -> transactionOperations.execute(status -> applyOperations(request.getUsername(), operations)));
+    }
+
+    private ResponseEntity<CartResponse> add(ModifyCartRequest request) {
+        User user = userCache.findUser(request.getUsername());
         if (user == null) {
             log.error("User not found = username : {}",request.getUsername()); 
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
-        Optional<Item> item = itemRepository.findById(request.getItemId());
+        Optional<Item> item = itemCache.findById(request.getItemId());
         if (!item.isPresent()) {
             log.error("Item not found - item id : {}",request.getItemId()); 
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
         Cart cart = user.getCart();
-        IntStream.range(0, request.getQuantity())
-                .forEach(i -> cart.addItem(item.get()));
+        cart.addItem(item.get(), request.getQuantity());
         cartRepository.save(cart);
-        return ResponseEntity.ok(cart);
+        return ResponseEntity.ok(CartResponse.of(cart));
     }
 
-    @PostMapping("/removeFromCart")
-    public ResponseEntity<Cart> removeFromcart(@RequestBody ModifyCartRequest request) {
-        User user = userRepository.findByUsername(request.getUsername());
+    private ResponseEntity<CartResponse> remove(ModifyCartRequest request) {
+        User user = userCache.findUser(request.getUsername());
         if (user == null) {
             log.warn("User not found - User id : {}",request.getUsername()); 
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
-        Optional<Item> item = itemRepository.findById(request.getItemId());
+        Optional<Item> item = itemCache.findById(request.getItemId());
         if (!item.isPresent()) {
             log.warn("Item not found - Item id : {}",request.getItemId());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
         Cart cart = user.getCart();
-        IntStream.range(0, request.getQuantity())
-                .forEach(i -> cart.removeItem(item.get()));
+        cart.removeItem(item.get(), request.getQuantity());
+        cartRepository.save(cart);
+        return ResponseEntity.ok(CartResponse.of(cart));
+    }
+
+    private ResponseEntity<CartResponse> applyOperations(String username, List<CartOperation> operations) {
+        User user = userCache.findUser(username);
+        if (user == null) {
+            log.warn("User not found - User id : {}", username);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        Set<Long> itemIds = operations.stream()
+                .map(CartOperation::getItemId)
+                .collect(Collectors.toSet());
+        Map<Long, Item> items = new HashMap<>();
+        for (Item item : itemCache.findAllById(itemIds)) {
+            items.put(item.getId(), item);
+        }
+        if (items.size() != itemIds.size()) {
+            itemIds.removeAll(items.keySet());
+            log.warn("Item not found - Item ids : {}", itemIds);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        Cart cart = user.getCart();
+        for (CartOperation operation : operations) {
+            Item item = items.get(operation.getItemId());
+            if (operation.getAction() == CartOperation.Action.ADD) {
+                cart.addItem(item, operation.getQuantity());
+            } else {
+                cart.removeItem(item, operation.getQuantity());
+            }
+        }
         cartRepository.save(cart);
-        return ResponseEntity.ok(cart);
+        return ResponseEntity.ok(CartResponse.of(cart));
     }
 
 }
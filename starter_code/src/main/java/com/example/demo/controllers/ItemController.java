@@ -1,31 +1,93 @@
 package com.example.demo.controllers;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.cache.ItemCache;
+import com.example.demo.cache.ItemNameIndex;
 import com.example.demo.model.persistence.Item;
 import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.reactive.JdbcReadScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import reactor.core.publisher.Flux;
+
 @RestController
 @RequestMapping("/api/item")
 public class ItemController {
 
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    static final int STREAM_PAGE_SIZE = 500;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
+    @Autowired
+    private ItemCache itemCache;
+
+    @Autowired
+    private ItemNameIndex itemNameIndex;
+
     @Autowired
     private ItemRepository itemRepository;
 
+    @Autowired
+    private JdbcReadScheduler jdbcReadScheduler;
+
+    /**
+     * The whole catalog, cached only while it fits {@code item.cache.max-size};
+     * a larger catalog is better read with {@code ?size=} or {@code /stream}.
+     */
     @GetMapping
     public ResponseEntity<List<Item>> getItems() {
-        return ResponseEntity.ok(itemRepository.findAll());
+        return ResponseEntity.ok(itemCache.findAll());
+    }
+
+    /**
+     * One page of the catalog in id order. With {@code afterId} the page starts
+     * right after that id (keyset paging, cheap at any depth); otherwise
+     * {@code page} is used as a zero-based offset page number.
+     */
+    @GetMapping(params = "size")
+    public ResponseEntity<List<Item>> getItemPage(@RequestParam(defaultValue = "0") int page,
+            @RequestParam int size,
+            @RequestParam(required = false) Long afterId) {
+
+        if (page < 0 || size <= 0 || size > MAX_PAGE_SIZE) {
+            log.warn("Invalid item page request - page : {} size : {}", page, size);
+            return ResponseEntity.badRequest().build();
+        }
+        if (afterId != null) {
+            return ResponseEntity.ok(itemRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, size)));
+        }
+        return ResponseEntity.ok(itemRepository.findAllByOrderByIdAsc(PageRequest.of(page, size)));
+    }
+
+    /**
+     * Streams the whole catalog as newline-delimited JSON. Items are read in
+     * keyset pages on the {@link JdbcReadScheduler} as the client consumes
+     * them, so the request holds no thread or connection while it waits.
+     */
+    @GetMapping(value = "/stream", produces = APPLICATION_NDJSON_VALUE)
+    public Flux<Item> streamItems() {
+        return jdbcReadScheduler.readPages(0L,
+                afterId -> itemRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, STREAM_PAGE_SIZE)),
+                Item::getId,
+                STREAM_PAGE_SIZE);
     }
 
     @GetMapping("/{id}")
@@ -35,13 +97,13 @@ public class ItemController {
          * given body and the OK status, or an empty body and a NOT FOUND status
          * in case of a Optional.empty() parameter.
          */
-        return ResponseEntity.of(itemRepository.findById(id));
+        return ResponseEntity.of(itemCache.findById(id));
     }
 
     @GetMapping("/name/{name}")
     public ResponseEntity<List<Item>> getItemsByName(@PathVariable String name) {
 
-        List<Item> items = itemRepository.findByName(name);
+        List<Item> items = itemCache.findByName(name);
 
         if (items == null || items.isEmpty()) {
             log.error("item not found for item: {}", name);
@@ -51,4 +113,54 @@ public class ItemController {
 
     }
 
+    /**
+     * Name search with an explicit match mode: {@code exact} (same as
+     * {@link #getItemsByName}), {@code ignore-case}, or {@code prefix} which
+     * returns at most {@code limit} items (1 to {@value #MAX_PAGE_SIZE}) whose
+     * name starts with the given text, ignoring case. The last two are answered from the in-memory name
+     * index.
+     */
+    @GetMapping(value = "/name/{name}", params = "match")
+    public ResponseEntity<List<Item>> searchItemsByName(@PathVariable String name,
+            @RequestParam String match,
+            @RequestParam(defaultValue = "20") int limit) {
+
+        List<Long> ids;
+        switch (match) {
+            case "exact":
+                return getItemsByName(name);
+            case "ignore-case":
+                ids = itemNameIndex.findIdsByNameIgnoreCase(name);
+                break;
+            case "prefix":
+                if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+                    log.warn("Invalid name prefix limit : {}", limit);
+                    return ResponseEntity.badRequest().build();
+                }
+                ids = itemNameIndex.findIdsByNamePrefix(name, limit);
+                break;
+            default:
+                log.warn("Unknown name match mode : {}", match);
+                return ResponseEntity.badRequest().build();
+        }
+
+        Map<Long, Item> itemsById = new HashMap<>();
+        for (Item item : itemCache.findAllById(ids)) {
+            itemsById.put(item.getId(), item);
+        }
+        List<Item> items = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Item item = itemsById.get(id);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+
+        if (items.isEmpty()) {
+            log.error("item not found for item: {} match: {}", name, match);
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(items);
+    }
+
 }
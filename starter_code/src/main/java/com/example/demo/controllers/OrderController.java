@@ -1,66 +1,415 @@
 package com.example.demo.controllers;
 
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.cache.UserCache;
+import com.example.demo.cache.UserCredentials;
+import com.example.demo.cart.CartLocks;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartLine;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.OrderRepository;
-import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.OrderReceipt;
+import com.example.demo.model.responses.OrderResponse;
+import com.example.demo.model.responses.OrderSummary;
+import com.example.demo.orders.AsyncOrderWriter;
+import com.example.demo.orders.IdempotencyKeyStore;
+import com.example.demo.orders.IdempotencyRecord;
+import com.example.demo.orders.PendingOrder;
+import com.example.demo.reactive.JdbcReadScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import reactor.core.publisher.Flux;
+
 @RestController
 @RequestMapping("/api/order")
 public class OrderController {
 
+    static final int MAX_PAGE_SIZE = 100;
+
+    static final String PREFER = "Prefer";
+
+    static final String RESPOND_ASYNC = "respond-async";
+
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
+    static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     @Autowired
-    private UserRepository userRepository;
+    private UserCache userCache;
 
     @Autowired
     private OrderRepository orderRepository;
 
-    public OrderController(UserRepository userRepository, OrderRepository orderRepository) {
-        this.userRepository = userRepository;
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private TransactionOperations transactionOperations;
+
+    @Autowired
+    private CartLocks cartLocks;
+
+    @Autowired
+    private JdbcReadScheduler jdbcReadScheduler;
+
+    @Autowired
+    private AsyncOrderWriter asyncOrderWriter;
+
+    @Autowired
+    private IdempotencyKeyStore idempotencyKeyStore;
+
+    public OrderController(UserCache userCache, OrderRepository orderRepository) {
+        this.userCache = userCache;
         this.orderRepository = orderRepository;
     }
 
     public OrderController() {
     }
 
+    /**
+     * Submits the user's cart as an order, asynchronously when the request
+     * carries a {@code Prefer} header asking for {@code respond-async} among
+     * its comma-separated preferences (e.g. {@code respond-async, wait=10}),
+     * and synchronously otherwise.
+     */
     @PostMapping("/submit/{username}")
-    public ResponseEntity<UserOrder> submit(@PathVariable String username) {
+    public ResponseEntity<?> submitOrder(@PathVariable String username,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestHeader(value = PREFER, required = false) String prefer) {
 
-        User user = userRepository.findByUsername(username);
+        return prefersAsync(prefer) ? submitAsync(username, idempotencyKey) : submit(username, idempotencyKey);
+    }
+
+    /**
+     * Creates an order from the user's cart and empties the cart, in one
+     * transaction under the user's cart lock. With an {@code Idempotency-Key}
+     * header, a retry carrying the same key gets the order the first attempt
+     * created, marked {@code Idempotent-Replayed}, and nothing new is written;
+     * a retry that arrives while the first attempt is still running gets 409.
+     */
+    public ResponseEntity<OrderResponse> submit(String username, String idempotencyKey) {
+
+        if (!isValidIdempotencyKey(idempotencyKey)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return cartLocks.withLock(username, () -> placeOrder(username, idempotencyKey));
+    }
+
+    private ResponseEntity<OrderResponse> placeOrder(String username, String idempotencyKey) {
+        User user = userCache.findUser(username);
         if (user == null) {
             log.warn("Order submission failed - no user found with username : {}", username);
             return ResponseEntity.notFound().build();
         }
-        UserOrder order = UserOrder.createFromCart(user.getCart());
-        orderRepository.save(order);
+        String storeKey = idempotencyKey == null ? null : username + ':' + idempotencyKey;
+        if (storeKey != null) {
+            IdempotencyRecord existing = idempotencyKeyStore.claim(storeKey);
+            if (existing != null) {
+                return replayOrder(username, existing);
+            }
+        }
+        if (isEmpty(user.getCart())) {
+            log.warn("Order submission failed - empty cart for username : {}", username);
+            release(storeKey);
+            return ResponseEntity.badRequest().build();
+        }
+        UserOrder order;
+        try {
+            order = transactionOperations.execute(status -> checkout(username, user.getCart()));
+        } catch (RuntimeException e) {
+            release(storeKey);
+            throw e;
+        }
+        if (storeKey != null) {
+            idempotencyKeyStore.complete(storeKey, order.getReference());
+        }
 
         log.info("Order submission successful for username : {}", username);
 
-        return ResponseEntity.ok(order);
+        return ResponseEntity.ok(OrderResponse.of(order));
+    }
+
+    /**
+     * Accept-then-process variant of {@link #submit}, chosen by sending
+     * {@code Prefer: respond-async}. The cart is snapshotted and emptied, and
+     * only once that has committed is the order queued for the
+     * {@link AsyncOrderWriter}, so the writer never sees an order whose cart
+     * is still full. The response is 202 with the order reference to poll at
+     * {@code /api/order/reference/{reference}}, or 503 when the queue is full,
+     * in which case the cart gets its lines back. If the order cannot be
+     * written its lines are put back in the cart by
+     * {@link com.example.demo.orders.FailedOrderRecovery}.
+     */
+    public ResponseEntity<OrderReceipt> submitAsync(String username, String idempotencyKey) {
+
+        if (!isValidIdempotencyKey(idempotencyKey)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return cartLocks.withLock(username, () -> queueOrder(username, idempotencyKey));
+    }
+
+    private ResponseEntity<OrderReceipt> queueOrder(String username, String idempotencyKey) {
+        User user = userCache.findUser(username);
+        if (user == null) {
+            log.warn("Order submission failed - no user found with username : {}", username);
+            return ResponseEntity.notFound().build();
+        }
+        String storeKey = idempotencyKey == null ? null : username + ':' + idempotencyKey;
+        if (storeKey != null) {
+            IdempotencyRecord existing = idempotencyKeyStore.claim(storeKey);
+            if (existing != null) {
+                return replayReceipt(username, user.getId(), existing);
+            }
+        }
+        if (isEmpty(user.getCart())) {
+            log.warn("Order submission failed - empty cart for username : {}", username);
+            release(storeKey);
+            return ResponseEntity.badRequest().build();
+        }
+        Cart cart = user.getCart();
+        reconcileTotal(username, cart);
+        UserOrder order = UserOrder.createFromCart(cart);
+        List<CartLine> taken = new ArrayList<>(cart.getLines());
+        try {
+            transactionOperations.executeWithoutResult(status -> {
+                cart.clear();
+                cartRepository.save(cart);
+            });
+        } catch (RuntimeException e) {
+            release(storeKey);
+            throw e;
+        }
+        if (!asyncOrderWriter.submit(PendingOrder.of(order, storeKey))) {
+            log.warn("Order submission refused, order queue is full - username : {}", username);
+            transactionOperations.executeWithoutResult(status -> {
+                for (CartLine line : taken) {
+                    cart.addItem(line.getItem(), line.getQuantity());
+                }
+                cartRepository.save(cart);
+            });
+            release(storeKey);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        if (storeKey != null) {
+            idempotencyKeyStore.complete(storeKey, order.getReference());
+        }
+
+        log.info("Order {} accepted for username : {}", order.getReference(), username);
+
+        return ResponseEntity.accepted()
+                .header("Preference-Applied", RESPOND_ASYNC)
+                .location(URI.create("/api/order/reference/" + order.getReference()))
+                .body(new OrderReceipt(order.getReference(), OrderReceipt.Status.PENDING, null));
+    }
+
+    /**
+     * Where an order submitted asynchronously stands: 202 while it is queued,
+     * 200 with its id once written (fetch it from {@code /api/order/{id}}), 200
+     * with status FAILED if it could not be written, and 404 for a reference
+     * the caller did not place.
+     */
+    @GetMapping("/reference/{reference}")
+    public ResponseEntity<OrderReceipt> getOrderStatus(Principal principal, @PathVariable String reference) {
+        UserCredentials caller = callerOf(principal);
+        if (caller == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return orderStatus(reference, caller.getUserId());
+    }
+
+    private ResponseEntity<OrderReceipt> orderStatus(String reference, long userId) {
+        OrderReceipt.Status status = asyncOrderWriter.statusOf(reference, userId);
+        if (status == OrderReceipt.Status.PENDING) {
+            return ResponseEntity.accepted().body(new OrderReceipt(reference, status, null));
+        }
+        Optional<Long> orderId = orderRepository.findIdByReferenceAndUserId(reference, userId);
+        if (orderId.isPresent()) {
+            return ResponseEntity.ok(new OrderReceipt(reference, OrderReceipt.Status.COMPLETED, orderId.get()));
+        }
+        if (status == OrderReceipt.Status.FAILED) {
+            return ResponseEntity.ok(new OrderReceipt(reference, status, null));
+        }
+        return ResponseEntity.notFound().build();
     }
 
     @GetMapping("/history/{username}")
-    public ResponseEntity<List<UserOrder>> getOrdersForUser(@PathVariable String username) {
-        User user = userRepository.findByUsername(username);
+    public ResponseEntity<List<OrderResponse>> getOrdersForUser(@PathVariable String username) {
+        User user = userCache.findUser(username);
         if (user == null) {
             log.warn("No user found with username : {}", username);
             return ResponseEntity.notFound().build();
         }
         log.info("List of order retrieve successful for username : {}", username);
-        return ResponseEntity.ok(orderRepository.findByUser(user));
+        List<UserOrder> orders = orderRepository.findByUser(user);
+        List<OrderResponse> responses = new ArrayList<>(orders.size());
+        for (UserOrder order : orders) {
+            responses.add(OrderResponse.of(order));
+        }
+        return ResponseEntity.ok(responses);
+    }
+
+    /**
+     * Pages through a user's orders newest first as summaries (id, total,
+     * item count, timestamp). Pass the smallest id of the previous page as
+     * {@code beforeId} to get the next one.
+     */
+    @GetMapping("/history/{username}/summary")
+    public ResponseEntity<List<OrderSummary>> getOrderSummariesForUser(@PathVariable String username,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "20") int size) {
+
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            log.warn("Invalid order history page size : {}", size);
+            return ResponseEntity.badRequest().build();
+        }
+        User user = userCache.findUser(username);
+        if (user == null) {
+            log.warn("No user found with username : {}", username);
+            return ResponseEntity.notFound().build();
+        }
+        long before = beforeId == null ? Long.MAX_VALUE : beforeId;
+        return ResponseEntity.ok(orderRepository.findSummariesByUserId(user.getId(), before, PageRequest.of(0, size)));
+    }
+
+    /**
+     * Streams all of a user's order summaries, newest first, as
+     * newline-delimited JSON. Pages are read on the {@link JdbcReadScheduler}
+     * as the client consumes them.
+     */
+    @GetMapping(value = "/history/{username}/stream", produces = ItemController.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<OrderSummary>> streamOrderSummariesForUser(@PathVariable String username) {
+        User user = userCache.findUser(username);
+        if (user == null) {
+            log.warn("No user found with username : {}", username);
+            return ResponseEntity.notFound().build();
+        }
+        long userId = user.getId();
+        return ResponseEntity.ok(jdbcReadScheduler.readPages(Long.MAX_VALUE,
+                beforeId -> orderRepository.findSummariesByUserId(userId, beforeId, PageRequest.of(0, MAX_PAGE_SIZE)),
+                OrderSummary::getId,
+                MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Returns one of the caller's orders; an order placed by anyone else is
+     * reported as not found, the same as one that does not exist.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<OrderResponse> getOrderById(Principal principal, @PathVariable Long id) {
+        UserCredentials caller = callerOf(principal);
+        if (caller == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.of(orderRepository.findWithLinesByIdAndUserId(id, caller.getUserId())
+                .map(OrderResponse::of));
+    }
+
+    private UserCredentials callerOf(Principal principal) {
+        return principal == null ? null : userCache.findCredentials(principal.getName());
+    }
+
+    /**
+     * Writes the order lines, in one batch, and clears the cart's lines; runs
+     * inside the caller's transaction.
+     */
+    private UserOrder checkout(String username, Cart cart) {
+        reconcileTotal(username, cart);
+        UserOrder order = UserOrder.createFromCart(cart);
+        orderRepository.save(order);
+        cart.clear();
+        cartRepository.save(cart);
+        return order;
+    }
+
+    private ResponseEntity<OrderResponse> replayOrder(String username, IdempotencyRecord existing) {
+        Optional<UserOrder> original = existing.isInProgress() ? Optional.empty()
+                : orderRepository.findIdByReference(existing.getOrderReference())
+                        .flatMap(orderRepository::findWithLinesById);
+        if (!original.isPresent()) {
+            log.warn("Order submission for username : {} repeats one that is still in progress", username);
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        log.info("Order submission for username : {} replayed order {}", username, existing.getOrderReference());
+        return ResponseEntity.ok().header(IDEMPOTENT_REPLAYED, "true").body(OrderResponse.of(original.get()));
+    }
+
+    private ResponseEntity<OrderReceipt> replayReceipt(String username, long userId, IdempotencyRecord existing) {
+        if (existing.isInProgress()) {
+            log.warn("Order submission for username : {} repeats one that is still in progress", username);
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        log.info("Order submission for username : {} replayed order {}", username, existing.getOrderReference());
+        ResponseEntity<OrderReceipt> status = orderStatus(existing.getOrderReference(), userId);
+        return ResponseEntity.status(status.getStatusCode()).header(IDEMPOTENT_REPLAYED, "true").body(status.getBody());
+    }
+
+    private void reconcileTotal(String username, Cart cart) {
+        long runningTotal = cart.getTotalMinor();
+        if (cart.reconcileTotal()) {
+            log.warn("Cart total for username : {} was {} minor units, lines add up to {}; corrected",
+                    username, runningTotal, cart.getTotalMinor());
+        }
+    }
+
+    private static boolean isEmpty(Cart cart) {
+        return cart == null || cart.getLines().isEmpty();
+    }
+
+    private void release(String storeKey) {
+        if (storeKey != null) {
+            idempotencyKeyStore.release(storeKey);
+        }
+    }
+
+    /**
+     * True if one of the preferences in a {@code Prefer} header value is
+     * {@code respond-async}. Preferences are separated by commas and may carry
+     * a value or parameters, which are ignored; names are case-insensitive.
+     */
+    static boolean prefersAsync(String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String preference : prefer.split(",")) {
+            String name = preference.split("[;=]", 2)[0].trim();
+            if (RESPOND_ASYNC.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isValidIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            log.warn("Invalid Idempotency-Key of length {}", idempotencyKey.length());
+            return false;
+        }
+        return true;
     }
 }
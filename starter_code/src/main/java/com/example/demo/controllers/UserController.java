@@ -1,14 +1,21 @@
 package com.example.demo.controllers;
 
+import com.example.demo.cache.UserCache;
+import com.example.demo.cache.UsernameFilter;
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.User;
-import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.model.responses.UserImportReport;
+import com.example.demo.users.UserImporter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Principal;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -24,7 +31,13 @@ public class UserController {
     private UserRepository userRepository;
 
     @Autowired
-    private CartRepository cartRepository;
+    private UsernameFilter usernameFilter;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private UserImporter userImporter;
 
     @Autowired
     private BCryptPasswordEncoder bCryptPasswordEncoder;
@@ -42,7 +55,7 @@ public class UserController {
 
     @GetMapping("/{username}")
     public ResponseEntity<User> findByUserName(@PathVariable String username) {
-        User user = userRepository.findByUsername(username);
+        User user = userCache.findUser(username);
         if (user == null) {
             log.warn("User is NOT found by username: {}", username);
             return ResponseEntity.notFound().build();
@@ -66,12 +79,6 @@ public class UserController {
             return ResponseEntity.badRequest().build();
         }
         
-        Cart cart = new Cart();
-        cartRepository.save(cart);
-        User user = new User();
-        user.setUsername(createUserRequest.getUsername());
-        user.setCart(cart);
-
         if (createUserRequest.getPassword().length() < 7
                 || !createUserRequest.getPassword().equals(createUserRequest.getConfirmPassword())) {
 
@@ -82,22 +89,59 @@ public class UserController {
             return ResponseEntity.badRequest().build();
         }
 
-        User findByUsername = userRepository.findByUsername(createUserRequest.getUsername().trim());
+        /**
+         * Check if username is unique. The filter answers for names that were
+         * never taken; the database is only asked about the others.
+         */
+        String trimmedUsername = username.trim();
+        if (usernameFilter.mightExist(trimmedUsername)) {
+            if (userRepository.findByUsername(trimmedUsername) != null) {
+
+                log.error("Username must be unique - username {} already exists", username);
+                return ResponseEntity.badRequest().build();
+            }
+            usernameFilter.falsePositive();
+        }
+
+        User user = new User();
+        user.setUsername(username);
+        user.setCart(new Cart());
+        user.setPassword(bCryptPasswordEncoder.encode(password));
 
         /**
-         * Check if username is unique
+         * The cart is inserted with the user, in the same transaction, so a
+         * lost race on the unique username leaves nothing behind
          */
-        if (findByUsername != null) {
+        try {
+            userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
 
-            log.error("Username must be unique - username {} already exists", createUserRequest.getUsername());
+            log.error("Username must be unique - username {} was taken concurrently", username);
+            usernameFilter.add(username);
             return ResponseEntity.badRequest().build();
         }
-
-        user.setPassword(bCryptPasswordEncoder.encode(createUserRequest.getPassword()));
-        userRepository.save(user);
+        usernameFilter.add(username);
+        userCache.invalidate(username);
 
         log.info("User created successfully username: {}   id: {}", user.getUsername(), user.getId());
 
         return ResponseEntity.ok(user);
     }
+
+    /**
+     * Creates users in bulk from an NDJSON body with one create-user request
+     * per line. Rows that cannot be imported are listed in the report and do
+     * not stop the others. Only the users listed in {@code user.import.admins}
+     * may import; anyone else gets 403.
+     */
+    @PostMapping(value = "/import", consumes = ItemController.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<UserImportReport> importUsers(Principal principal, InputStream body) throws IOException {
+
+        String username = principal == null ? null : principal.getName();
+        if (!userImporter.isAllowed(username)) {
+            log.warn("User import refused - username : {} is not an import admin", username);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(userImporter.importUsers(body));
+    }
 }
@@ -0,0 +1,34 @@
+package com.example.demo.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between decimal amounts and whole minor units (cents). Running
+ * totals are kept as {@code long} minor units so adding a line is exact integer
+ * arithmetic; {@link BigDecimal} is only used for prices as stored and for
+ * amounts written to JSON.
+ */
+public final class Money {
+
+    /**
+     * Decimal places of a price, matching the {@code decimal(19,2)} price
+     * columns
+     */
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * Whole minor units in {@code amount}, rounded half up to {@link #SCALE}
+     * places. Throws ArithmeticException if the result does not fit in a long.
+     */
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+}
@@ -1,18 +1,25 @@
 package com.example.demo.model.persistence;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.ManyToMany;
+import javax.persistence.MapKey;
+import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.OrderBy;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import com.example.demo.model.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
@@ -20,30 +27,40 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public class Cart {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_seq")
+    @SequenceGenerator(name = "cart_seq", sequenceName = "cart_seq", allocationSize = 50)
     @JsonProperty
     @Column
     private Long id;
 
-    @ManyToMany
-    @JsonProperty
-    @Column
-    private List<Item> items;
+    /**
+     * Lines keyed by item id so finding, updating and dropping the line of an
+     * item never scans the cart.
+     */
+    @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
+    @MapKey(name = "itemId")
+    @OrderBy("id")
+    @JsonIgnore
+    private Map<Long, CartLine> lines = new LinkedHashMap<>();
 
     @OneToOne(mappedBy = "cart")
-    @JsonProperty
+    @JsonIgnore
     private User user;
 
-    @Column
-    @JsonProperty
-    private BigDecimal total;
+    /**
+     * Sum of the line totals in minor units, kept up to date as lines change
+     */
+    @Column(name = "total_minor", nullable = false)
+    @JsonIgnore
+    private long totalMinor;
 
-    public BigDecimal getTotal() {
-        return total;
+    public long getTotalMinor() {
+        return totalMinor;
     }
 
-    public void setTotal(BigDecimal total) {
-        this.total = total;
+    @JsonProperty("total")
+    public BigDecimal getTotal() {
+        return Money.toDecimal(totalMinor);
     }
 
     public User getUser() {
@@ -62,39 +79,91 @@ public class Cart {
         this.id = id;
     }
 
-    public List<Item> getItems() {
-        return items;
+    @JsonProperty("lines")
+    public Collection<CartLine> getLines() {
+        return lines.values();
     }
 
-    public void setItems(List<Item> items) {
-        this.items = items;
+    public void addItem(Item item) {
+        addItem(item, 1);
     }
 
-    public void addItem(Item item) {
-        if (items == null) {
-            items = new ArrayList<>();
+    /**
+     * Adds {@code quantity} units of the item as a single update of its cart
+     * line, creating the line the first time the item is added.
+     */
+    public void addItem(Item item, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("quantity must be positive: " + quantity);
         }
-        items.add(item);
-        if (total == null) {
-            total = new BigDecimal(0);
+        CartLine line = lines.get(item.getId());
+        if (line == null) {
+            line = new CartLine(this, item);
+            lines.put(item.getId(), line);
         }
-        total = total.add(item.getPrice());
+        totalMinor = Math.addExact(totalMinor, line.changeQuantity(quantity));
     }
 
     public void removeItem(Item item) {
-        if (items == null) {
-            items = new ArrayList<>();
+        removeItem(item, 1);
+    }
+
+    /**
+     * Removes up to {@code quantity} units of the item as a single update of
+     * its cart line, dropping the line once no units are left. Units the cart
+     * does not hold are ignored so the total never goes below what is left.
+     */
+    public void removeItem(Item item, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("quantity must be positive: " + quantity);
+        }
+        CartLine line = lines.get(item.getId());
+        if (line == null) {
+            return;
+        }
+        int removed = Math.min(quantity, line.getQuantity());
+        totalMinor = Math.addExact(totalMinor, line.changeQuantity(-removed));
+        if (line.getQuantity() == 0) {
+            lines.remove(item.getId());
+        }
+    }
+
+    /**
+     * Empties the cart once its contents have been ordered.
+     */
+    public void clear() {
+        lines.clear();
+        totalMinor = 0;
+    }
+
+    /**
+     * Recomputes the total from the lines and replaces the running total if
+     * the two disagree. Returns true if the running total had to be corrected.
+     */
+    public boolean reconcileTotal() {
+        long sum = 0;
+        for (CartLine line : lines.values()) {
+            sum = Math.addExact(sum, line.getLineTotalMinor());
         }
-        items.remove(item);
-        if (total == null) {
-            total = new BigDecimal(0);
+        if (sum == totalMinor) {
+            return false;
         }
-        total = total.subtract(item.getPrice());
+        totalMinor = sum;
+        return true;
+    }
+
+    /**
+     * Returns the number of units of the item currently held in the cart.
+     */
+    public int getQuantity(Item item) {
+        CartLine line = lines.get(item.getId());
+        return line == null ? 0 : line.getQuantity();
     }
 
     @Override
     public String toString() {
-        return "Cart{" + "id=" + id + ", items=" + items + ", user=" + user + ", total=" + total + '}';
+        return "Cart{" + "id=" + id + ", lines=" + lines.values() + ", user="
+                + (user == null ? null : user.getUsername()) + ", totalMinor=" + totalMinor + '}';
     }
 
 }
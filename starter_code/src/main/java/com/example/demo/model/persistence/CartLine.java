@@ -0,0 +1,141 @@
+package com.example.demo.model.persistence;
+
+import java.math.BigDecimal;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import com.example.demo.model.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One distinct item held in a cart together with the number of units of it,
+ * so the size of a cart depends on its distinct items rather than its units.
+ */
+@Entity
+@Table(name = "cart_line", indexes = @Index(name = "idx_cart_line_cart_id", columnList = "cart_id"))
+public class CartLine {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_line_seq")
+    @SequenceGenerator(name = "cart_line_seq", sequenceName = "cart_line_seq", allocationSize = 50)
+    @JsonProperty
+    private Long id;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "cart_id", nullable = false)
+    @JsonIgnore
+    private Cart cart;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "item_id", nullable = false)
+    @JsonProperty
+    private Item item;
+
+    /**
+     * Read-only copy of the item foreign key, used as the key of
+     * {@link Cart}'s line map without loading the item.
+     */
+    @Column(name = "item_id", insertable = false, updatable = false)
+    @JsonIgnore
+    private Long itemId;
+
+    @Column(nullable = false)
+    @JsonProperty
+    private int quantity;
+
+    /**
+     * Item price in minor units as of the last change to this line
+     */
+    @Column(name = "unit_price_minor", nullable = false)
+    @JsonIgnore
+    private long unitPriceMinor;
+
+    public CartLine() {
+    }
+
+    public CartLine(Cart cart, Item item) {
+        this.cart = cart;
+        this.item = item;
+        this.itemId = item.getId();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Cart getCart() {
+        return cart;
+    }
+
+    public void setCart(Cart cart) {
+        this.cart = cart;
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public void setItem(Item item) {
+        this.item = item;
+        this.itemId = item == null ? null : item.getId();
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getUnitPriceMinor() {
+        return unitPriceMinor;
+    }
+
+    @JsonIgnore
+    public long getLineTotalMinor() {
+        return Math.multiplyExact(unitPriceMinor, (long) quantity);
+    }
+
+    @JsonProperty("unitPrice")
+    public BigDecimal getUnitPrice() {
+        return Money.toDecimal(unitPriceMinor);
+    }
+
+    @JsonProperty("lineTotal")
+    public BigDecimal getLineTotal() {
+        return Money.toDecimal(getLineTotalMinor());
+    }
+
+    /**
+     * Adjusts the quantity by the given (possibly negative) number of units,
+     * re-prices the line at the item's current price and returns by how many
+     * minor units the line total changed.
+     */
+    long changeQuantity(int delta) {
+        long before = getLineTotalMinor();
+        unitPriceMinor = Money.toMinor(item.getPrice());
+        quantity += delta;
+        return getLineTotalMinor() - before;
+    }
+
+    @Override
+    public String toString() {
+        return "CartLine{" + "id=" + id + ", item=" + item + ", quantity=" + quantity + ", unitPriceMinor="
+                + unitPriceMinor + '}';
+    }
+}
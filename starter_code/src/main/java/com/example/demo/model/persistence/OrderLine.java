@@ -0,0 +1,75 @@
+package com.example.demo.model.persistence;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One line of a submitted order: the item, the unit price paid and the
+ * quantity. Lines are copied from the cart at checkout and never change, so
+ * later price edits or cart changes do not rewrite order history.
+ */
+@Embeddable
+public class OrderLine {
+
+    @Column(name = "item_id", nullable = false, updatable = false)
+    @JsonProperty
+    private Long itemId;
+
+    @Column(name = "unit_price", nullable = false, updatable = false)
+    @JsonProperty
+    private BigDecimal unitPrice;
+
+    @Column(nullable = false, updatable = false)
+    @JsonProperty
+    private int quantity;
+
+    protected OrderLine() {
+    }
+
+    public OrderLine(Long itemId, BigDecimal unitPrice, int quantity) {
+        this.itemId = itemId;
+        this.unitPrice = unitPrice;
+        this.quantity = quantity;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OrderLine)) {
+            return false;
+        }
+        OrderLine other = (OrderLine) o;
+        return quantity == other.quantity && Objects.equals(itemId, other.itemId)
+                && (unitPrice == null ? other.unitPrice == null
+                        : other.unitPrice != null && unitPrice.compareTo(other.unitPrice) == 0);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(itemId, quantity);
+    }
+
+    @Override
+    public String toString() {
+        return "OrderLine{" + "itemId=" + itemId + ", unitPrice=" + unitPrice + ", quantity=" + quantity + '}';
+    }
+}
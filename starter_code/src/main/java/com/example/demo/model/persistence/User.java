@@ -6,12 +6,13 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "user")
+@Table(name = "user", indexes = @Index(name = "idx_user_cart_id", columnList = "cart_id", unique = true))
 public class User {
 
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     @JsonProperty
     private long id;
 
@@ -62,7 +63,7 @@ public class User {
 
     @Override
     public String toString() {
-        return "User{" + "id=" + id + ", username=" + username + ", password=" + password + ", cart=" + cart + '}';
+        return "User{" + "id=" + id + ", username=" + username + ", cart=" + (cart == null ? null : cart.getId()) + '}';
     }
 
 }
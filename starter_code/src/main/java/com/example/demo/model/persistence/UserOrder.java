@@ -1,46 +1,87 @@
 package com.example.demo.model.persistence;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
-import javax.persistence.CascadeType;
+import javax.persistence.CollectionTable;
 import javax.persistence.Column;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
-import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import com.example.demo.model.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
-@Table(name = "user_order")
+@Table(name = "user_order", indexes = @Index(name = "idx_user_order_user_id", columnList = "user_id, id"))
 public class UserOrder {
 
+    /**
+     * Ids handed out per sequence call. With the pooled-lo optimizer a call
+     * returning {@code n} reserves {@code n} to {@code n + ID_ALLOCATION_SIZE - 1},
+     * which is how {@link com.example.demo.orders.AsyncOrderWriter} allocates
+     * ids outside Hibernate.
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_order_seq")
+    @SequenceGenerator(name = "user_order_seq", sequenceName = "user_order_seq", allocationSize = ID_ALLOCATION_SIZE)
     @JsonProperty
     @Column
     private Long id;
 
-    @ManyToMany(cascade = CascadeType.ALL)
+    /**
+     * Copied from the cart lines at checkout and written once, in a single
+     * batch; items themselves are only referenced by id.
+     */
+    @ElementCollection
+    @CollectionTable(name = "user_order_line", joinColumns = @JoinColumn(name = "order_id", nullable = false),
+            indexes = @Index(name = "idx_user_order_line_order_id", columnList = "order_id"))
     @JsonProperty
-    @Column
-    private List<Item> items;
+    private List<OrderLine> lines = new ArrayList<>();
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false, referencedColumnName = "id")
-    @JsonProperty
+    @JsonIgnore
     private User user;
 
     @JsonProperty
     @Column
     private BigDecimal total;
 
+    /**
+     * Number of units ordered, stored with the order so summaries never have
+     * to read its lines.
+     */
+    @JsonProperty
+    @Column(name = "item_count")
+    private int itemCount;
+
+    @JsonProperty
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    /**
+     * Handed to the client when the order is accepted, before it has an id,
+     * so it can be looked up while and after it is written.
+     */
+    @JsonProperty
+    @Column(name = "reference", unique = true, updatable = false, length = 36)
+    private String reference;
+
     public Long getId() {
         return id;
     }
@@ -49,12 +90,12 @@ public class UserOrder {
         this.id = id;
     }
 
-    public List<Item> getItems() {
-        return items;
+    public List<OrderLine> getLines() {
+        return lines;
     }
 
-    public void setItems(List<Item> items) {
-        this.items = items;
+    public void setLines(List<OrderLine> lines) {
+        this.lines = lines;
     }
 
     public User getUser() {
@@ -73,16 +114,55 @@ public class UserOrder {
         this.total = total;
     }
 
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(int itemCount) {
+        this.itemCount = itemCount;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    public void setReference(String reference) {
+        this.reference = reference;
+    }
+
+    /**
+     * Copies the cart's lines into a new order. The order total is summed from
+     * those lines rather than copied from the cart's running total.
+     */
     public static UserOrder createFromCart(Cart cart) {
         UserOrder order = new UserOrder();
-        order.setItems(cart.getItems().stream().collect(Collectors.toList()));
-        order.setTotal(cart.getTotal());
+        List<OrderLine> lines = new ArrayList<>(cart.getLines().size());
+        int itemCount = 0;
+        long totalMinor = 0;
+        for (CartLine line : cart.getLines()) {
+            lines.add(new OrderLine(line.getItemId(), line.getUnitPrice(), line.getQuantity()));
+            itemCount += line.getQuantity();
+            totalMinor = Math.addExact(totalMinor, line.getLineTotalMinor());
+        }
+        order.setLines(lines);
+        order.setItemCount(itemCount);
+        order.setCreatedAt(Instant.now());
+        order.setTotal(Money.toDecimal(totalMinor));
         order.setUser(cart.getUser());
+        order.setReference(UUID.randomUUID().toString());
         return order;
     }
 
-//    @Override
-//    public String toString() {
-//        return "UserOrder{" + "id=" + id + ", items=" + items + ", user=" + user.getUsername() + ", total=" + total + '}';
-//    }
+    @Override
+    public String toString() {
+        return "UserOrder{" + "id=" + id + ", reference=" + reference + ", lines=" + lines + ", total=" + total + '}';
+    }
 }
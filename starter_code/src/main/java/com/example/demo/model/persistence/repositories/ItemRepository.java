@@ -1,8 +1,11 @@
 package com.example.demo.model.persistence.repositories;
 
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import com.example.demo.model.persistence.Item;
 import org.springframework.stereotype.Repository;
@@ -11,4 +14,23 @@ import org.springframework.stereotype.Repository;
 public interface ItemRepository extends JpaRepository<Item, Long> {
 	List<Item> findByName(String name);
 
+	/**
+	 * Streams {@code [id, name]} pairs of the whole catalog without loading
+	 * managed entities; must be consumed inside a transaction.
+	 */
+	@Query("select i.id, i.name from Item i")
+	Stream<Object[]> streamIdsAndNames();
+
+	/**
+	 * Offset page of the catalog in id order, without the count query a
+	 * {@code Page} would need.
+	 */
+	List<Item> findAllByOrderByIdAsc(Pageable pageable);
+
+	/**
+	 * Keyset page: the next items after {@code afterId} in id order, which
+	 * stays an index range scan however deep the client pages.
+	 */
+	List<Item> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
 }
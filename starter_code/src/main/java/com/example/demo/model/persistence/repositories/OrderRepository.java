@@ -1,14 +1,51 @@
 package com.example.demo.model.persistence.repositories;
 
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.responses.OrderSummary;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface OrderRepository extends JpaRepository<UserOrder, Long> {
+	@EntityGraph(attributePaths = "lines")
 	List<UserOrder> findByUser(User user);
+
+	/**
+	 * Keyset page of a user's order summaries, newest first, starting below
+	 * {@code beforeId}. Reads user_order only.
+	 */
+	@Query("select new com.example.demo.model.responses.OrderSummary(o.id, o.total, o.itemCount, o.createdAt)"
+			+ " from UserOrder o where o.user.id = :userId and o.id < :beforeId order by o.id desc")
+	List<OrderSummary> findSummariesByUserId(@Param("userId") long userId, @Param("beforeId") long beforeId,
+			Pageable pageable);
+
+	/**
+	 * Loads one order together with its lines in a single query; the user is
+	 * left as a lazy proxy since responses do not include it.
+	 */
+	@EntityGraph(attributePaths = "lines")
+	Optional<UserOrder> findWithLinesById(Long id);
+
+	/**
+	 * Like {@link #findWithLinesById}, but empty unless the order belongs to
+	 * the given user
+	 */
+	@EntityGraph(attributePaths = "lines")
+	@Query("select o from UserOrder o where o.id = :id and o.user.id = :userId")
+	Optional<UserOrder> findWithLinesByIdAndUserId(@Param("id") Long id, @Param("userId") long userId);
+
+	@Query("select o.id from UserOrder o where o.reference = :reference")
+	Optional<Long> findIdByReference(@Param("reference") String reference);
+
+	@Query("select o.id from UserOrder o where o.reference = :reference and o.user.id = :userId")
+	Optional<Long> findIdByReferenceAndUserId(@Param("reference") String reference, @Param("userId") long userId);
 }
@@ -1,6 +1,14 @@
 package com.example.demo.model.persistence.repositories;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.demo.model.persistence.User;
 import org.springframework.stereotype.Repository;
@@ -8,4 +16,25 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 	User findByUsername(String username);
+
+	/**
+	 * Streams every username without loading managed entities; must be
+	 * consumed inside a transaction.
+	 */
+	@Query("select u.username from User u")
+	Stream<String> streamUsernames();
+
+	/**
+	 * Returns those of {@code usernames} that are taken
+	 */
+	@Query("select u.username from User u where u.username in :usernames")
+	List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+	/**
+	 * Replaces the password hash without loading the user
+	 */
+	@Transactional
+	@Modifying
+	@Query("update User u set u.password = :password where u.id = :id")
+	int updatePassword(@Param("id") long id, @Param("password") String password);
 }
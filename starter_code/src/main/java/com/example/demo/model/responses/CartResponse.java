@@ -0,0 +1,101 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.CartLine;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * What the cart endpoints return: the cart's lines and total, without the
+ * owning user or the full item entities.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CartResponse {
+
+	@JsonProperty
+	private final Long id;
+
+	@JsonProperty
+	private final BigDecimal total;
+
+	@JsonProperty
+	private final List<Line> lines;
+
+	public CartResponse(Long id, BigDecimal total, List<Line> lines) {
+		this.id = id;
+		this.total = total;
+		this.lines = lines;
+	}
+
+	public static CartResponse of(Cart cart) {
+		List<Line> lines = new ArrayList<>(cart.getLines().size());
+		for (CartLine line : cart.getLines()) {
+			lines.add(new Line(line.getItemId(), line.getItem().getName(), line.getUnitPrice(), line.getQuantity(),
+					line.getLineTotal()));
+		}
+		return new CartResponse(cart.getId(), cart.getTotal(), lines);
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public BigDecimal getTotal() {
+		return total;
+	}
+
+	public List<Line> getLines() {
+		return lines;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public static class Line {
+
+		@JsonProperty
+		private final Long itemId;
+
+		@JsonProperty
+		private final String name;
+
+		@JsonProperty
+		private final BigDecimal unitPrice;
+
+		@JsonProperty
+		private final int quantity;
+
+		@JsonProperty
+		private final BigDecimal lineTotal;
+
+		public Line(Long itemId, String name, BigDecimal unitPrice, int quantity, BigDecimal lineTotal) {
+			this.itemId = itemId;
+			this.name = name;
+			this.unitPrice = unitPrice;
+			this.quantity = quantity;
+			this.lineTotal = lineTotal;
+		}
+
+		public Long getItemId() {
+			return itemId;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public BigDecimal getUnitPrice() {
+			return unitPrice;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+		public BigDecimal getLineTotal() {
+			return lineTotal;
+		}
+	}
+}
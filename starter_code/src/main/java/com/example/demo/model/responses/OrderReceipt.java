@@ -0,0 +1,43 @@
+package com.example.demo.model.responses;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * State of an order submitted with {@code Prefer: respond-async}. The order id
+ * is only known once the order has been written.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderReceipt {
+
+	public enum Status {
+		PENDING, COMPLETED, FAILED
+	}
+
+	@JsonProperty
+	private final String reference;
+
+	@JsonProperty
+	private final Status status;
+
+	@JsonProperty
+	private final Long orderId;
+
+	public OrderReceipt(String reference, Status status, Long orderId) {
+		this.reference = reference;
+		this.status = status;
+		this.orderId = orderId;
+	}
+
+	public String getReference() {
+		return reference;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public Long getOrderId() {
+		return orderId;
+	}
+}
@@ -0,0 +1,75 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import com.example.demo.model.persistence.OrderLine;
+import com.example.demo.model.persistence.UserOrder;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * What the order endpoints return for a full order: its lines and totals,
+ * without the user who placed it.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderResponse {
+
+	@JsonProperty
+	private final Long id;
+
+	@JsonProperty
+	private final String reference;
+
+	@JsonProperty
+	private final BigDecimal total;
+
+	@JsonProperty
+	private final int itemCount;
+
+	@JsonProperty
+	private final Instant createdAt;
+
+	@JsonProperty
+	private final List<OrderLine> lines;
+
+	public OrderResponse(Long id, String reference, BigDecimal total, int itemCount, Instant createdAt,
+			List<OrderLine> lines) {
+		this.id = id;
+		this.reference = reference;
+		this.total = total;
+		this.itemCount = itemCount;
+		this.createdAt = createdAt;
+		this.lines = lines;
+	}
+
+	public static OrderResponse of(UserOrder order) {
+		return new OrderResponse(order.getId(), order.getReference(), order.getTotal(), order.getItemCount(),
+				order.getCreatedAt(), order.getLines());
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getReference() {
+		return reference;
+	}
+
+	public BigDecimal getTotal() {
+		return total;
+	}
+
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	public Instant getCreatedAt() {
+		return createdAt;
+	}
+
+	public List<OrderLine> getLines() {
+		return lines;
+	}
+}
@@ -0,0 +1,49 @@
+package com.example.demo.model.responses;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Lightweight view of a submitted order for history listings; built directly
+ * by the query so neither the order's items nor its user are loaded.
+ */
+public class OrderSummary {
+
+	@JsonProperty
+	private final Long id;
+
+	@JsonProperty
+	private final BigDecimal total;
+
+	@JsonProperty
+	private final int itemCount;
+
+	@JsonProperty
+	private final Instant createdAt;
+
+	public OrderSummary(Long id, BigDecimal total, int itemCount, Instant createdAt) {
+		this.id = id;
+		this.total = total;
+		this.itemCount = itemCount;
+		this.createdAt = createdAt;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public BigDecimal getTotal() {
+		return total;
+	}
+
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	public Instant getCreatedAt() {
+		return createdAt;
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.example.demo.model.responses;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Outcome of a bulk user import: how many rows were imported and failed, and
+ * why each failed row was rejected. Only the first
+ * {@value #MAX_REPORTED_FAILURES} failures are listed.
+ */
+public class UserImportReport {
+
+	public static final int MAX_REPORTED_FAILURES = 1000;
+
+	@JsonProperty
+	private long imported;
+
+	@JsonProperty
+	private long failed;
+
+	@JsonProperty
+	private final List<Failure> failures = new ArrayList<>();
+
+	public void recordImported(int count) {
+		imported += count;
+	}
+
+	public void recordFailure(long line, String username, String reason) {
+		failed++;
+		if (failures.size() < MAX_REPORTED_FAILURES) {
+			failures.add(new Failure(line, username, reason));
+		}
+	}
+
+	public long getImported() {
+		return imported;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	public List<Failure> getFailures() {
+		return Collections.unmodifiableList(failures);
+	}
+
+	public static class Failure {
+
+		@JsonProperty
+		private final long line;
+
+		@JsonProperty
+		private final String username;
+
+		@JsonProperty
+		private final String reason;
+
+		public Failure(long line, String username, String reason) {
+			this.line = line;
+			this.username = username;
+			this.reason = reason;
+		}
+
+		public long getLine() {
+			return line;
+		}
+
+		public String getUsername() {
+			return username;
+		}
+
+		public String getReason() {
+			return reason;
+		}
+	}
+}
@@ -0,0 +1,394 @@
+package com.example.demo.orders;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.example.demo.model.persistence.OrderLine;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.responses.OrderReceipt;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Accept-then-process order pipeline. Submissions are snapshotted into a
+ * bounded in-memory queue and acknowledged immediately; a single writer thread
+ * drains the queue and inserts the orders in groups of up to
+ * {@code order.submit.batch-size} with JDBC batch statements, one transaction
+ * per group.
+ *
+ * When the queue is full a submission is refused rather than buffered. If a
+ * group fails, its orders are retried one by one so a single bad order does not
+ * take the others down with it. An order that still cannot be written is
+ * reported FAILED and published as an {@link OrderWriteFailedEvent}. Pending
+ * orders are flushed before shutdown.
+ */
+@Component
+public class AsyncOrderWriter implements SmartLifecycle, MeterBinder {
+
+    static final String INSERT_ORDER = "insert into user_order (id, reference, total, item_count, created_at, user_id)"
+            + " values (?, ?, ?, ?, ?, ?)";
+
+    static final String ORDER_ID_SEQUENCE = "user_order_seq";
+
+    static final String INSERT_ORDER_LINE = "insert into user_order_line (order_id, item_id, unit_price, quantity)"
+            + " values (?, ?, ?, ?)";
+
+    private static final int MAX_FAILED_REFERENCES = 10_000;
+
+    private static final int RATE_WINDOW_SECONDS = 10;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String nextOrderIdBlock;
+
+    private final TransactionOperations transactionOperations;
+
+    private final ApplicationEventPublisher publisher;
+
+    private final BlockingQueue<PendingOrder> queue;
+
+    private final int batchSize;
+
+    /**
+     * References of queued and failed orders, each mapped to the id of the
+     * user who placed the order
+     */
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> failed = Collections.synchronizedMap(
+            new LinkedHashMap<String, Long>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > MAX_FAILED_REFERENCES;
+                }
+            });
+
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Orders written per second, one bucket per second over the last
+     * {@link #RATE_WINDOW_SECONDS}
+     */
+    private final AtomicLongArray writtenPerSecond = new AtomicLongArray(RATE_WINDOW_SECONDS);
+
+    private final AtomicLongArray bucketSecond = new AtomicLongArray(RATE_WINDOW_SECONDS);
+
+    private volatile Timer batchTimer;
+
+    private volatile DistributionSummary batchSizes;
+
+    /**
+     * Unused ids of the last block taken from {@value #ORDER_ID_SEQUENCE}; only
+     * touched by the writer thread
+     */
+    private long nextOrderId;
+
+    private int orderIdsLeft;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    public AsyncOrderWriter(JdbcTemplate jdbcTemplate, TransactionOperations transactionOperations,
+            EntityManagerFactory entityManagerFactory, ApplicationEventPublisher publisher,
+            @Value("${order.submit.queue-capacity:1000}") int queueCapacity,
+            @Value("${order.submit.batch-size:100}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nextOrderIdBlock = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceNextValString(ORDER_ID_SEQUENCE);
+        this.transactionOperations = transactionOperations;
+        this.publisher = publisher;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Queues an order for writing. Returns false, without queueing it, if the
+     * queue is full or the writer is shutting down.
+     */
+    public boolean submit(PendingOrder order) {
+        if (!running) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        pending.put(order.getReference(), order.getUserId());
+        if (!queue.offer(order)) {
+            pending.remove(order.getReference());
+            rejected.incrementAndGet();
+            return false;
+        }
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * PENDING while the order is queued or being written, FAILED if it could
+     * not be written, and null otherwise - either the order has been written
+     * or the reference is unknown.
+     */
+    public OrderReceipt.Status statusOf(String reference) {
+        if (pending.containsKey(reference)) {
+            return OrderReceipt.Status.PENDING;
+        }
+        return failed.containsKey(reference) ? OrderReceipt.Status.FAILED : null;
+    }
+
+    /**
+     * Like {@link #statusOf(String)}, but null unless the order was placed by
+     * the given user.
+     */
+    public OrderReceipt.Status statusOf(String reference, long userId) {
+        Long owner = pending.get(reference);
+        if (owner != null) {
+            return owner == userId ? OrderReceipt.Status.PENDING : null;
+        }
+        owner = failed.get(reference);
+        return owner != null && owner == userId ? OrderReceipt.Status.FAILED : null;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Orders written per second, averaged over the last
+     * {@value #RATE_WINDOW_SECONDS} complete seconds.
+     */
+    public double getDrainRate() {
+        long now = currentSecond();
+        long sum = 0;
+        for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+            long age = now - bucketSecond.get(i);
+            if (age >= 1 && age <= RATE_WINDOW_SECONDS) {
+                sum += writtenPerSecond.get(i);
+            }
+        }
+        return (double) sum / RATE_WINDOW_SECONDS;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::drain, "order-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Order writer stopped with {} orders still queued", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the web server so requests still in flight can queue their
+     * orders, and before the datasource goes away.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    private void drain() {
+        List<PendingOrder> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Order writer failed on a batch of {} orders", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingOrder> batch) {
+        long start = System.nanoTime();
+        try {
+            insert(batch);
+            completed(batch);
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                failed(batch.get(0), e);
+                return;
+            }
+            log.warn("Batch of {} orders failed, writing them one by one - {}", batch.size(), e.getMessage());
+            for (PendingOrder order : batch) {
+                try {
+                    insert(Collections.singletonList(order));
+                    completed(Collections.singletonList(order));
+                } catch (RuntimeException single) {
+                    failed(order, single);
+                }
+            }
+        } finally {
+            Timer timer = batchTimer;
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                batchSizes.record(batch.size());
+            }
+        }
+    }
+
+    private void insert(List<PendingOrder> orders) {
+        long[] orderIds = allocateOrderIds(orders.size());
+        transactionOperations.execute(status -> {
+            List<Object[]> orderRows = new ArrayList<>(orders.size());
+            for (int i = 0; i < orders.size(); i++) {
+                PendingOrder order = orders.get(i);
+                orderRows.add(new Object[]{orderIds[i], order.getReference(), order.getTotal(), order.getItemCount(),
+                        Timestamp.from(order.getCreatedAt()), order.getUserId()});
+            }
+            jdbcTemplate.batchUpdate(INSERT_ORDER, orderRows);
+
+            List<Object[]> orderLines = new ArrayList<>();
+            for (int i = 0; i < orders.size(); i++) {
+                for (OrderLine line : orders.get(i).getLines()) {
+                    orderLines.add(new Object[]{orderIds[i], line.getItemId(), line.getUnitPrice(), line.getQuantity()});
+                }
+            }
+            if (!orderLines.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_ORDER_LINE, orderLines);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Takes ids from the same pooled sequence Hibernate uses for orders, one
+     * sequence call per {@link UserOrder#ID_ALLOCATION_SIZE} ids, so the
+     * orders can be inserted with their lines without reading ids back.
+     */
+    private long[] allocateOrderIds(int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            if (orderIdsLeft == 0) {
+                nextOrderId = jdbcTemplate.queryForObject(nextOrderIdBlock, Long.class);
+                orderIdsLeft = UserOrder.ID_ALLOCATION_SIZE;
+            }
+            ids[i] = nextOrderId++;
+            orderIdsLeft--;
+        }
+        return ids;
+    }
+
+    private void completed(List<PendingOrder> orders) {
+        for (PendingOrder order : orders) {
+            pending.remove(order.getReference());
+        }
+        written.addAndGet(orders.size());
+        long second = currentSecond();
+        int bucket = (int) (second % RATE_WINDOW_SECONDS);
+        if (bucketSecond.get(bucket) != second) {
+            writtenPerSecond.set(bucket, 0);
+            bucketSecond.set(bucket, second);
+        }
+        writtenPerSecond.addAndGet(bucket, orders.size());
+    }
+
+    private void failed(PendingOrder order, RuntimeException e) {
+        failed.put(order.getReference(), order.getUserId());
+        pending.remove(order.getReference());
+        failures.incrementAndGet();
+        log.error("Order {} for user id {} could not be written", order.getReference(), order.getUserId(), e);
+        /**
+         * A failing listener must not stop the rest of the batch from being
+         * written
+         */
+        try {
+            publisher.publishEvent(new OrderWriteFailedEvent(order));
+        } catch (RuntimeException listenerFailure) {
+            log.error("Handling the failure of order {} failed", order.getReference(), listenerFailure);
+        }
+    }
+
+    private static long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("orders.queue.depth", queue, BlockingQueue::size)
+                .description("Accepted orders waiting to be written")
+                .register(registry);
+        Gauge.builder("orders.drain.rate", this, AsyncOrderWriter::getDrainRate)
+                .description("Orders written per second over the last " + RATE_WINDOW_SECONDS + " seconds")
+                .register(registry);
+        FunctionCounter.builder("orders.submitted", accepted, AtomicLong::get)
+                .tag("result", "accepted")
+                .register(registry);
+        FunctionCounter.builder("orders.submitted", rejected, AtomicLong::get)
+                .tag("result", "rejected")
+                .register(registry);
+        FunctionCounter.builder("orders.written", written, AtomicLong::get)
+                .tag("result", "success")
+                .register(registry);
+        FunctionCounter.builder("orders.written", failures, AtomicLong::get)
+                .tag("result", "failure")
+                .register(registry);
+        batchSizes = DistributionSummary.builder("orders.write.batch.size")
+                .register(registry);
+        batchTimer = Timer.builder("orders.write.batch")
+                .description("Time to write one batch of orders")
+                .register(registry);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.demo.orders;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.example.demo.cache.ItemCache;
+import com.example.demo.cache.UserCache;
+import com.example.demo.cart.CartLocks;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.OrderLine;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.CartRepository;
+
+/**
+ * Puts the lines of an order the {@link AsyncOrderWriter} could not write
+ * back into the user's cart. The cart was emptied when the order was
+ * accepted, so without this the items would be lost; anything added since is
+ * kept and the restored quantities are added on top. The order's
+ * {@code Idempotency-Key}, if it had one, is released so a retry with the same
+ * key places the order again instead of replaying the failure. Runs under the
+ * user's cart lock, like every other cart change, and so after the submitting
+ * request has finished with the key. The event arrives on the writer thread;
+ * the restore is handed to the application task executor so the writer never
+ * waits for a cart lock held by a request.
+ */
+@Component
+public class FailedOrderRecovery {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final UserCache userCache;
+
+    private final ItemCache itemCache;
+
+    private final CartRepository cartRepository;
+
+    private final CartLocks cartLocks;
+
+    private final TransactionOperations transactionOperations;
+
+    private final IdempotencyKeyStore idempotencyKeyStore;
+
+    private final Executor recoveryExecutor;
+
+    public FailedOrderRecovery(UserCache userCache, ItemCache itemCache, CartRepository cartRepository,
+            CartLocks cartLocks, TransactionOperations transactionOperations,
+            IdempotencyKeyStore idempotencyKeyStore,
+            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor recoveryExecutor) {
+        this.userCache = userCache;
+        this.itemCache = itemCache;
+        this.cartRepository = cartRepository;
+        this.cartLocks = cartLocks;
+        this.transactionOperations = transactionOperations;
+        this.idempotencyKeyStore = idempotencyKeyStore;
+        this.recoveryExecutor = recoveryExecutor;
+    }
+
+    @EventListener
+    public void onOrderWriteFailed(OrderWriteFailedEvent event) {
+        recoveryExecutor.execute(() -> recover(event.getOrder()));
+    }
+
+    private void recover(PendingOrder order) {
+        try {
+            cartLocks.withLock(order.getUsername(), () -> {
+                if (order.getIdempotencyKey() != null) {
+                    idempotencyKeyStore.release(order.getIdempotencyKey());
+                }
+                return transactionOperations.execute(status -> restoreCart(order));
+            });
+        } catch (RuntimeException e) {
+            log.error("Cart of failed order {} not restored for username : {}", order.getReference(),
+                    order.getUsername(), e);
+        }
+    }
+
+    private Void restoreCart(PendingOrder order) {
+        User user = userCache.findUser(order.getUsername());
+        if (user == null || user.getCart() == null) {
+            log.warn("Cart of failed order {} not restored - no user found with username : {}",
+                    order.getReference(), order.getUsername());
+            return null;
+        }
+        Set<Long> itemIds = order.getLines().stream()
+                .map(OrderLine::getItemId)
+                .collect(Collectors.toSet());
+        Map<Long, Item> items = new HashMap<>();
+        for (Item item : itemCache.findAllById(itemIds)) {
+            items.put(item.getId(), item);
+        }
+        Cart cart = user.getCart();
+        for (OrderLine line : order.getLines()) {
+            Item item = items.get(line.getItemId());
+            if (item == null) {
+                log.warn("Item {} of failed order {} no longer exists, not restored to the cart",
+                        line.getItemId(), order.getReference());
+                continue;
+            }
+            cart.addItem(item, line.getQuantity());
+        }
+        cartRepository.save(cart);
+        log.info("Cart of username : {} restored from failed order {}", order.getUsername(), order.getReference());
+        return null;
+    }
+}
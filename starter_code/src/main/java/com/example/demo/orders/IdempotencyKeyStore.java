@@ -0,0 +1,32 @@
+package com.example.demo.orders;
+
+/**
+ * Remembers which order an {@code Idempotency-Key} produced, so a retried
+ * submission can be answered with the original order instead of creating a
+ * new one.
+ *
+ * The contract maps directly onto a table with a unique key column: claim is
+ * an insert that may hit the unique constraint, complete an update, and
+ * release a delete. {@link InMemoryIdempotencyKeyStore} is the default; a
+ * table-backed store takes its place when registered as a {@code @Primary}
+ * bean.
+ */
+public interface IdempotencyKeyStore {
+
+    /**
+     * Claims {@code key} for a new submission. Returns null if the caller now
+     * owns the key and must {@link #complete} or {@link #release} it;
+     * otherwise returns what is already stored for the key.
+     */
+    IdempotencyRecord claim(String key);
+
+    /**
+     * Records the reference of the order created for a claimed key.
+     */
+    void complete(String key, String orderReference);
+
+    /**
+     * Forgets a claimed key whose submission failed, so it can be retried.
+     */
+    void release(String key);
+}
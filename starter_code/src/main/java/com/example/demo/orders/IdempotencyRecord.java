@@ -0,0 +1,32 @@
+package com.example.demo.orders;
+
+/**
+ * What an {@link IdempotencyKeyStore} holds for a key: either a submission
+ * still in progress, or the reference of the order it created.
+ */
+public final class IdempotencyRecord {
+
+    private static final IdempotencyRecord IN_PROGRESS = new IdempotencyRecord(null);
+
+    private final String orderReference;
+
+    private IdempotencyRecord(String orderReference) {
+        this.orderReference = orderReference;
+    }
+
+    public static IdempotencyRecord inProgress() {
+        return IN_PROGRESS;
+    }
+
+    public static IdempotencyRecord completed(String orderReference) {
+        return new IdempotencyRecord(orderReference);
+    }
+
+    public boolean isInProgress() {
+        return orderReference == null;
+    }
+
+    public String getOrderReference() {
+        return orderReference;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.demo.orders;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Default {@link IdempotencyKeyStore}, kept in memory and therefore per
+ * instance. Holds at most {@code order.idempotency.max-keys} keys, dropping
+ * the oldest first, and forgets a key {@code order.idempotency.ttl-seconds}
+ * after it was claimed.
+ */
+@Component
+public class InMemoryIdempotencyKeyStore implements IdempotencyKeyStore, MeterBinder {
+
+    private final long ttlNanos;
+
+    /**
+     * Insertion order is claim order, so the eldest entries are both the
+     * first to expire and the first to evict
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong claimed = new AtomicLong();
+
+    private final AtomicLong replayed = new AtomicLong();
+
+    private final AtomicLong conflicts = new AtomicLong();
+
+    public InMemoryIdempotencyKeyStore(@Value("${order.idempotency.max-keys:10000}") int maxKeys,
+            @Value("${order.idempotency.ttl-seconds:86400}") long ttlSeconds) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    @Override
+    public synchronized IdempotencyRecord claim(String key) {
+        long now = System.nanoTime();
+        expire(now);
+        Entry existing = entries.get(key);
+        if (existing != null) {
+            if (existing.record.isInProgress()) {
+                conflicts.incrementAndGet();
+            } else {
+                replayed.incrementAndGet();
+            }
+            return existing.record;
+        }
+        entries.put(key, new Entry(IdempotencyRecord.inProgress(), now));
+        claimed.incrementAndGet();
+        return null;
+    }
+
+    @Override
+    public synchronized void complete(String key, String orderReference) {
+        Entry existing = entries.get(key);
+        if (existing != null) {
+            entries.put(key, new Entry(IdempotencyRecord.completed(orderReference), existing.claimedAt));
+        }
+    }
+
+    @Override
+    public synchronized void release(String key) {
+        entries.remove(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void expire(long now) {
+        Iterator<Entry> oldestFirst = entries.values().iterator();
+        while (oldestFirst.hasNext() && now - oldestFirst.next().claimedAt >= ttlNanos) {
+            oldestFirst.remove();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("orders.idempotency.keys", claimed, AtomicLong::get)
+                .tag("result", "claimed")
+                .register(registry);
+        FunctionCounter.builder("orders.idempotency.keys", replayed, AtomicLong::get)
+                .tag("result", "replayed")
+                .description("Retried submissions answered with the original order")
+                .register(registry);
+        FunctionCounter.builder("orders.idempotency.keys", conflicts, AtomicLong::get)
+                .tag("result", "conflict")
+                .description("Retries that arrived while the original submission was still running")
+                .register(registry);
+        Gauge.builder("orders.idempotency.size", this, InMemoryIdempotencyKeyStore::size)
+                .register(registry);
+    }
+
+    private static final class Entry {
+
+        private final IdempotencyRecord record;
+
+        private final long claimedAt;
+
+        private Entry(IdempotencyRecord record, long claimedAt) {
+            this.record = record;
+            this.claimedAt = claimedAt;
+        }
+    }
+}
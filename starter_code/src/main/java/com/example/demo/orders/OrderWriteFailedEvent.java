@@ -0,0 +1,24 @@
+package com.example.demo.orders;
+
+/**
+ * Published by the {@link AsyncOrderWriter} for an accepted order it could not
+ * write. The submission has already been answered and the cart emptied, so
+ * listeners are what give the user their items back.
+ */
+public class OrderWriteFailedEvent {
+
+    private final PendingOrder order;
+
+    public OrderWriteFailedEvent(PendingOrder order) {
+        this.order = order;
+    }
+
+    public PendingOrder getOrder() {
+        return order;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderWriteFailedEvent{" + "reference=" + order.getReference() + '}';
+    }
+}
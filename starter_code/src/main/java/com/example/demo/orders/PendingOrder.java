@@ -0,0 +1,93 @@
+package com.example.demo.orders;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.example.demo.model.persistence.OrderLine;
+import com.example.demo.model.persistence.UserOrder;
+
+/**
+ * Immutable snapshot of an accepted order waiting in the
+ * {@link AsyncOrderWriter} queue. It holds ids and values only, so later
+ * changes to the cart or its entities cannot leak into the written order.
+ */
+public final class PendingOrder {
+
+    private final String reference;
+
+    private final long userId;
+
+    private final String username;
+
+    private final BigDecimal total;
+
+    private final int itemCount;
+
+    private final Instant createdAt;
+
+    private final List<OrderLine> lines;
+
+    private final String idempotencyKey;
+
+    private PendingOrder(String reference, long userId, String username, BigDecimal total, int itemCount, Instant createdAt,
+            List<OrderLine> lines, String idempotencyKey) {
+        this.reference = reference;
+        this.userId = userId;
+        this.username = username;
+        this.total = total;
+        this.itemCount = itemCount;
+        this.createdAt = createdAt;
+        this.lines = lines;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public static PendingOrder of(UserOrder order) {
+        return of(order, null);
+    }
+
+    /**
+     * Snapshot of an order submitted under {@code idempotencyKey}, the key as
+     * held by the {@link IdempotencyKeyStore}, so it can be released if the
+     * order is never written.
+     */
+    public static PendingOrder of(UserOrder order, String idempotencyKey) {
+        return new PendingOrder(order.getReference(), order.getUser().getId(), order.getUser().getUsername(),
+                order.getTotal(), order.getItemCount(), order.getCreatedAt(),
+                Collections.unmodifiableList(new ArrayList<>(order.getLines())), idempotencyKey);
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+}
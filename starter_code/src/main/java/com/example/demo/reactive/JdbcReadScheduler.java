@@ -0,0 +1,63 @@
+package com.example.demo.reactive;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Adapts blocking repository reads to Reactor types for the streaming read
+ * endpoints. Queries run on a dedicated scheduler capped at the JDBC pool
+ * size, so no request thread waits on the database and no more threads block
+ * than there are connections to serve them.
+ *
+ * Large results are read as keyset pages that are only fetched when the
+ * subscriber has asked for more, so a slow client holds neither a thread nor
+ * a connection while it catches up.
+ */
+@Component
+public class JdbcReadScheduler implements DisposableBean {
+
+    private static final int MAX_QUEUED_READS = 10_000;
+
+    private final Scheduler scheduler;
+
+    public JdbcReadScheduler(@Value("${spring.datasource.hikari.maximum-pool-size:10}") int maxConnections) {
+        this.scheduler = Schedulers.newBoundedElastic(maxConnections, MAX_QUEUED_READS, "jdbc-read");
+    }
+
+    /**
+     * Runs a single blocking query on the read scheduler; a null result
+     * completes empty.
+     */
+    public <T> Mono<T> read(Callable<T> query) {
+        return Mono.fromCallable(query).subscribeOn(scheduler);
+    }
+
+    /**
+     * Streams every row of a keyset-paged query. {@code pageAfter} returns the
+     * page that follows a key, {@code keyOf} gives the key of a row, and
+     * paging stops at the first page shorter than {@code pageSize}. At most
+     * one page is read ahead of what the subscriber has consumed.
+     */
+    public <T, K> Flux<T> readPages(K firstKey, Function<K, List<T>> pageAfter, Function<T, K> keyOf, int pageSize) {
+        return read(() -> pageAfter.apply(firstKey))
+                .expand(page -> page.size() < pageSize
+                        ? Mono.empty()
+                        : read(() -> pageAfter.apply(keyOf.apply(page.get(page.size() - 1)))))
+                .concatMapIterable(page -> page, 1);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
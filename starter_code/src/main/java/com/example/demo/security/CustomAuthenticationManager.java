@@ -1,9 +1,16 @@
 package com.example.demo.security;
 
-import com.example.demo.model.persistence.User;
+import com.example.demo.cache.UserCache;
+import com.example.demo.cache.UserCredentials;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -15,31 +22,59 @@ import org.springframework.stereotype.Component;
 @Component
 public class CustomAuthenticationManager implements AuthenticationManager {
 
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
     @Autowired
     UserRepository UserRepository;
 
+    @Autowired
+    UserCache userCache;
+
     @Autowired
     BCryptPasswordEncoder BCryptPasswordEncoder;
 
+    /**
+     * Bounds how many logins verify a password at once; the hashing itself runs
+     * on the request thread
+     */
+    @Autowired
+    PasswordHashLimiter passwordHashLimiter;
+
+    /**
+     * Re-hashes outdated passwords after the login has been answered, see
+     * {@link com.example.demo.Application#passwordHashExecutor}
+     */
+    @Autowired
+    @Qualifier("passwordHashExecutor")
+    ExecutorService passwordHashExecutor;
+
+    @Value("${security.bcrypt.strength:10}")
+    int bcryptStrength;
+
     @Override
     public Authentication authenticate(Authentication authentication) throws AuthenticationException {
 
-        final User findByUsername = UserRepository.findByUsername(authentication.getName());
+        final UserCredentials credentials = userCache.findCredentials(authentication.getName());
 
-        if (findByUsername == null || authentication.getCredentials() == null) {
+        if (credentials == null || authentication.getCredentials() == null) {
 
             throw new BadCredentialsException("Failed to read credentials");
         }
 
         String password = authentication.getCredentials().toString();
         String username = authentication.getName();
+        String storedHash = credentials.getPasswordHash();
 
-        boolean matches = BCryptPasswordEncoder.matches(password, findByUsername.getPassword());
+        boolean matches = passwordHashLimiter.call(() -> BCryptPasswordEncoder.matches(password, storedHash));
 
         if (!matches) {
             throw new BadCredentialsException("Mismatch credentials");
         }
 
+        if (costOf(storedHash) != bcryptStrength) {
+            rehash(credentials, password);
+        }
+
         UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken
                 = new UsernamePasswordAuthenticationToken(username,
                         password,
@@ -49,4 +84,43 @@ public class CustomAuthenticationManager implements AuthenticationManager {
 
     }
 
+    /**
+     * Replaces a hash made with an outdated cost now that the raw password is
+     * known to be right. The login does not wait for it; failure only
+     * postpones the upgrade to a later login.
+     */
+    private void rehash(UserCredentials credentials, String password) {
+        try {
+            passwordHashExecutor.execute(() -> {
+                try {
+                    String hash = BCryptPasswordEncoder.encode(password);
+                    UserRepository.updatePassword(credentials.getUserId(), hash);
+                    userCache.invalidate(credentials.getUsername());
+                    log.info("Password re-hashed with BCrypt cost {} for username : {}", bcryptStrength,
+                            credentials.getUsername());
+                } catch (RuntimeException e) {
+                    log.warn("Password re-hash failed for username : {} - {}", credentials.getUsername(),
+                            e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Password re-hash postponed for username : {} - too many pending", credentials.getUsername());
+        }
+    }
+
+    /**
+     * Reads the cost factor from a {@code $2a$NN$...} BCrypt hash, or -1 if the
+     * hash is not in that format.
+     */
+    static int costOf(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
 }
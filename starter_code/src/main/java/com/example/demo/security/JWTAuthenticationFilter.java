@@ -17,12 +17,11 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 
 import com.auth0.jwt.JWT;
 import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
-import com.example.demo.model.persistence.User;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.BadCredentialsException;
 
 public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilter {
@@ -31,16 +30,26 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
     
     private AuthenticationManager authenticationManager;
 
-    public JWTAuthenticationFilter(AuthenticationManager authenticationManager) {
+    private final LoginRequestParser loginRequestParser;
+
+    public JWTAuthenticationFilter(AuthenticationManager authenticationManager, LoginRequestParser loginRequestParser) {
         this.authenticationManager = authenticationManager;
+        this.loginRequestParser = loginRequestParser;
     }
 
     @Override
     public Authentication attemptAuthentication(HttpServletRequest req,
             HttpServletResponse res) throws AuthenticationException {
+        /**
+         * Refuse a declared oversized body before reading any of it
+         */
+        if (req.getContentLengthLong() > loginRequestParser.getMaxBodyBytes()) {
+            res.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            log.warn("Login rejected : body of {} bytes", req.getContentLengthLong());
+            return null;
+        }
         try {
-            User credentials = new ObjectMapper()
-                    .readValue(req.getInputStream(), User.class);
+            LoginCredentials credentials = loginRequestParser.parse(req.getInputStream());
 
             Authentication authenticate = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
@@ -50,8 +59,15 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
 
             return authenticate;
 
+        } catch (LoginRequestTooLargeException tooLarge) {
+
+            res.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            log.warn("Login rejected : " + tooLarge.getMessage());
+            return null;
+
         } catch (IOException e) {
 
+            res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             log.warn("Something went wrong : "+e.getMessage());
             return null;
             
@@ -61,6 +77,12 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
             log.warn(bad.getMessage());
             return null;
 
+        } catch (AuthenticationServiceException busy) {
+
+            res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            log.warn("Login rejected : " + busy.getMessage());
+            return null;
+
         }
     }
 
@@ -14,8 +14,6 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.stereotype.Component;
 
-import com.auth0.jwt.JWT;
-import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
 import com.auth0.jwt.exceptions.AlgorithmMismatchException;
 import com.auth0.jwt.exceptions.InvalidClaimException;
 import com.auth0.jwt.exceptions.JWTDecodeException;
@@ -28,8 +26,11 @@ public class JWTAuthenticationVerficationFilter extends BasicAuthenticationFilte
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    public JWTAuthenticationVerficationFilter(AuthenticationManager authManager) {
+    private final JWTVerificationCache verificationCache;
+
+    public JWTAuthenticationVerficationFilter(AuthenticationManager authManager, JWTVerificationCache verificationCache) {
         super(authManager);
+        this.verificationCache = verificationCache;
     }
 
     @Override
@@ -61,9 +62,7 @@ public class JWTAuthenticationVerficationFilter extends BasicAuthenticationFilte
              */
             try {
 
-                user = JWT.require(HMAC512(SecurityConstants.SECRET.getBytes())).build()
-                        .verify(token.replace(SecurityConstants.TOKEN_PREFIX, ""))
-                        .getSubject();
+                user = verificationCache.verify(token.replace(SecurityConstants.TOKEN_PREFIX, ""));
             } catch (SignatureVerificationException | 
                      AlgorithmMismatchException | 
                      JWTDecodeException |
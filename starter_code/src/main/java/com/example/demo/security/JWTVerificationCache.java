@@ -0,0 +1,133 @@
+package com.example.demo.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.auth0.jwt.JWT;
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Verifies bearer tokens with a single shared {@link JWTVerifier} and
+ * remembers the outcome, so a token that is presented again before it expires
+ * skips decoding and signature verification.
+ *
+ * Entries are keyed by the SHA-256 digest of the token rather than the token
+ * itself, hold only the subject and expiry, and are bounded by
+ * {@code security.jwt.cache.max-size} in LRU order. Only successfully verified
+ * tokens are cached.
+ */
+@Component
+public class JWTVerificationCache implements MeterBinder {
+
+    private static final JWTVerifier VERIFIER = JWT.require(HMAC512(SecurityConstants.SECRET.getBytes())).build();
+
+    private final Map<String, VerifiedToken> verifiedTokens;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public JWTVerificationCache(@Value("${security.jwt.cache.max-size:10000}") int maxSize) {
+        this.verifiedTokens = Collections.synchronizedMap(new LinkedHashMap<String, VerifiedToken>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Returns the subject of the given token.
+     *
+     * @throws JWTVerificationException if the token is malformed, has a bad
+     * signature or has expired
+     */
+    public String verify(String token) {
+        String key = digest(token);
+        VerifiedToken cached = verifiedTokens.get(key);
+        if (cached != null) {
+            if (System.currentTimeMillis() < cached.expiresAt) {
+                hits.incrementAndGet();
+                return cached.subject;
+            }
+            verifiedTokens.remove(key);
+        }
+        misses.incrementAndGet();
+        DecodedJWT jwt = VERIFIER.verify(token);
+        if (jwt.getExpiresAt() != null) {
+            verifiedTokens.put(key, new VerifiedToken(jwt.getSubject(), jwt.getExpiresAt().getTime()));
+        }
+        return jwt.getSubject();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get)
+                .tag("cache", "jwt").tag("result", "hit")
+                .description("Bearer tokens accepted without signature verification")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get)
+                .tag("cache", "jwt").tag("result", "miss")
+                .description("Bearer tokens that went through signature verification")
+                .register(registry);
+        Gauge.builder("cache.hit.ratio", this, JWTVerificationCache::getHitRatio)
+                .tag("cache", "jwt")
+                .description("Share of bearer tokens answered from the verification cache")
+                .register(registry);
+        Gauge.builder("cache.size", verifiedTokens, Map::size)
+                .tag("cache", "jwt")
+                .register(registry);
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class VerifiedToken {
+
+        private final String subject;
+
+        private final long expiresAt;
+
+        private VerifiedToken(String subject, long expiresAt) {
+            this.subject = subject;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
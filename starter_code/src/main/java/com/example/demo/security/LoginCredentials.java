@@ -0,0 +1,29 @@
+package com.example.demo.security;
+
+/**
+ * Username and password read from a login request body.
+ */
+public final class LoginCredentials {
+
+    private final String username;
+
+    private final String password;
+
+    public LoginCredentials(String username, String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String toString() {
+        return "LoginCredentials{" + "username=" + username + '}';
+    }
+}
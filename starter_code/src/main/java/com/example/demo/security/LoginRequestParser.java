@@ -0,0 +1,128 @@
+package com.example.demo.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads {@code {"username": ..., "password": ...}} login bodies with Jackson's
+ * streaming parser, taken from the application's shared {@link ObjectMapper},
+ * instead of binding them to an entity with a fresh mapper per request. Other
+ * fields are skipped without being materialized.
+ *
+ * Bodies larger than {@code security.login.max-body-bytes} are refused with
+ * {@link LoginRequestTooLargeException}, whether or not the client declared a
+ * length up front.
+ */
+@Component
+public class LoginRequestParser {
+
+    private static final String USERNAME = "username";
+
+    private static final String PASSWORD = "password";
+
+    private final JsonFactory jsonFactory;
+
+    private final int maxBodyBytes;
+
+    public LoginRequestParser(ObjectMapper objectMapper,
+            @Value("${security.login.max-body-bytes:4096}") int maxBodyBytes) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    /**
+     * Parses the credentials in {@code body}. Fields that are missing come
+     * back as null; anything other than a JSON object with string credentials
+     * is a {@link JsonParseException}.
+     */
+    public LoginCredentials parse(InputStream body) throws IOException {
+        String username = null;
+        String password = null;
+        try (JsonParser parser = jsonFactory.createParser(new BoundedInputStream(body, maxBodyBytes))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Login body must be a JSON object");
+            }
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken value = parser.nextToken();
+                if (USERNAME.equals(field) || PASSWORD.equals(field)) {
+                    if (value != JsonToken.VALUE_STRING) {
+                        throw new JsonParseException(parser, "Login field '" + field + "' must be a string");
+                    }
+                    if (USERNAME.equals(field)) {
+                        username = parser.getText();
+                    } else {
+                        password = parser.getText();
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT) {
+                throw new JsonParseException(parser, "Login body must be a JSON object");
+            }
+        }
+        return new LoginCredentials(username, password);
+    }
+
+    /**
+     * Fails with {@link LoginRequestTooLargeException} as soon as more than
+     * the limit has been read.
+     */
+    private static final class BoundedInputStream extends InputStream {
+
+        private final InputStream in;
+
+        private final int limit;
+
+        private int read;
+
+        BoundedInputStream(InputStream in, int limit) {
+            this.in = in;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = in.read(buffer, offset, Math.min(length, limit - read + 1));
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws LoginRequestTooLargeException {
+            read += n;
+            if (read > limit) {
+                throw new LoginRequestTooLargeException(limit);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
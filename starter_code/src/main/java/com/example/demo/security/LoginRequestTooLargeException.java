@@ -0,0 +1,13 @@
+package com.example.demo.security;
+
+import java.io.IOException;
+
+/**
+ * A login request body is larger than {@code security.login.max-body-bytes}.
+ */
+public class LoginRequestTooLargeException extends IOException {
+
+    public LoginRequestTooLargeException(long limit) {
+        super("Login request body exceeds " + limit + " bytes");
+    }
+}
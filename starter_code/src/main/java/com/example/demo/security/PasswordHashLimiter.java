@@ -0,0 +1,49 @@
+package com.example.demo.security;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caps how many logins hash at once. BCrypt runs on the calling request
+ * thread, but at most {@code security.bcrypt.threads} (default: one per core)
+ * at a time; up to {@code security.bcrypt.queue-capacity} more wait for a
+ * turn, and any login beyond that fails fast instead of tying up every
+ * request thread.
+ */
+@Component
+public class PasswordHashLimiter {
+
+    private final Semaphore running;
+
+    private final Semaphore admitted;
+
+    public PasswordHashLimiter(@Value("${security.bcrypt.threads:0}") int threads,
+            @Value("${security.bcrypt.queue-capacity:100}") int queueCapacity) {
+        int concurrency = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.running = new Semaphore(concurrency, true);
+        this.admitted = new Semaphore(concurrency + Math.max(queueCapacity, 0));
+    }
+
+    public <T> T call(Supplier<T> hashing) {
+        if (!admitted.tryAcquire()) {
+            throw new AuthenticationServiceException("Too many concurrent logins");
+        }
+        try {
+            running.acquire();
+            try {
+                return hashing.get();
+            } finally {
+                running.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Interrupted while verifying credentials");
+        } finally {
+            admitted.release();
+        }
+    }
+}
@@ -1,61 +1,49 @@
 package com.example.demo.security;
 
-import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
-import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+@Configuration
 @EnableWebSecurity
-public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
+public class WebSecurityConfiguration {
 
-    private UserDetailsServiceImpl userDetailsService;
-    private BCryptPasswordEncoder bCryptPasswordEncoder;
-    ApplicationContext ApplicationContext;
+    private final CustomAuthenticationManager customAuthenticationManager;
+    private final JWTVerificationCache jwtVerificationCache;
+    private final LoginRequestParser loginRequestParser;
 
-    public WebSecurityConfiguration(UserDetailsServiceImpl userDetailsService,
-            BCryptPasswordEncoder bCryptPasswordEncoder, ApplicationContext ApplicationContext) {
-        this.userDetailsService = userDetailsService;
-        this.bCryptPasswordEncoder = bCryptPasswordEncoder;
-        this.ApplicationContext = ApplicationContext;
+    public WebSecurityConfiguration(CustomAuthenticationManager customAuthenticationManager,
+            JWTVerificationCache jwtVerificationCache, LoginRequestParser loginRequestParser) {
+        this.customAuthenticationManager = customAuthenticationManager;
+        this.jwtVerificationCache = jwtVerificationCache;
+        this.loginRequestParser = loginRequestParser;
     }
 
-    @Override
-    protected void configure(HttpSecurity http) throws Exception {
+    /**
+     * Logins are checked by {@link CustomAuthenticationManager}; every other
+     * request needs a bearer token, which is verified without a user lookup.
+     */
+    @Bean
+    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
 
         http.cors().and().csrf().disable().authorizeRequests()
                 .antMatchers(HttpMethod.POST, SecurityConstants.SIGN_UP_URL).permitAll()
                 .anyRequest().authenticated()
                 .and()
-                .addFilter(new JWTAuthenticationFilter((AuthenticationManager) ApplicationContext.getBean("customAuthenticationManager")))
-                .addFilter(new JWTAuthenticationVerficationFilter(authenticationManager()))
+                .authenticationManager(customAuthenticationManager)
+                .addFilter(new JWTAuthenticationFilter(customAuthenticationManager, loginRequestParser))
+                .addFilter(new JWTAuthenticationVerficationFilter(customAuthenticationManager, jwtVerificationCache))
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 .and()
                 .exceptionHandling()
                 .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED));
 
-    }
-
-    @Override
-    @Bean
-    @Primary
-    public AuthenticationManager authenticationManagerBean() throws Exception {
-        return super.authenticationManagerBean();
-    }
-
-    @Override
-    protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.parentAuthenticationManager(authenticationManagerBean())
-                .userDetailsService(userDetailsService)
-                .passwordEncoder(bCryptPasswordEncoder);
+        return http.build();
     }
 }
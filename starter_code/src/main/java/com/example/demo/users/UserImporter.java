@@ -0,0 +1,320 @@
+package com.example.demo.users;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.cache.UserCache;
+import com.example.demo.cache.UsernameFilter;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.CartRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.model.responses.UserImportReport;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Creates users in bulk from newline-delimited JSON, one
+ * {@link CreateUserRequest} per line, read as a stream so the file is never
+ * held in memory. Rows are validated like single signups, except that
+ * {@code confirmPassword} may be left out.
+ *
+ * Only the users named in {@code user.import.admins} may run an import;
+ * with the property left empty nobody can.
+ *
+ * Rows are processed in groups of {@code user.import.batch-size}: names that
+ * the {@link UsernameFilter} cannot rule out are checked with one query, the
+ * passwords are hashed in parallel on a fork-join pool of
+ * {@code user.import.hash-parallelism} threads, capped at the number of cores
+ * and separate from the pool that serves logins, and the group's carts and
+ * users are inserted in their own transaction. Repeated names are caught
+ * within a group; a name repeated in a later group is found by the existing
+ * username check, so memory does not grow with the file. Ids come from pooled sequences, so Hibernate sends each group
+ * as one JDBC batch of carts followed by one of users. If a group is rejected
+ * its rows are retried one by one, so a bad row only fails itself.
+ */
+@Component
+public class UserImporter implements MeterBinder, DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final UserRepository userRepository;
+
+    private final CartRepository cartRepository;
+
+    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+
+    private final UsernameFilter usernameFilter;
+
+    private final UserCache userCache;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ForkJoinPool hashPool;
+
+    private final int batchSize;
+
+    private final Set<String> admins;
+
+    private final AtomicLong imported = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    public UserImporter(UserRepository userRepository, CartRepository cartRepository,
+            BCryptPasswordEncoder bCryptPasswordEncoder, UsernameFilter usernameFilter, UserCache userCache,
+            ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+            @Value("${user.import.batch-size:500}") int batchSize,
+            @Value("${user.import.hash-parallelism:2}") int hashParallelism,
+            @Value("${user.import.admins:}") Set<String> admins) {
+        if (hashParallelism <= 0) {
+            throw new IllegalArgumentException("user.import.hash-parallelism must be positive, was " + hashParallelism);
+        }
+        this.userRepository = userRepository;
+        this.cartRepository = cartRepository;
+        this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.usernameFilter = usernameFilter;
+        this.userCache = userCache;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.admins = Set.copyOf(admins);
+        this.hashPool = new ForkJoinPool(Math.min(hashParallelism, Runtime.getRuntime().availableProcessors()));
+        /**
+         * A new transaction, and with it a new persistence context, per group,
+         * so the request's open-in-view context does not grow with the file
+         */
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * True if {@code username} is listed in {@code user.import.admins}.
+     */
+    public boolean isAllowed(String username) {
+        return username != null && admins.contains(username);
+    }
+
+    public UserImportReport importUsers(InputStream input) throws IOException {
+        UserImportReport report = new UserImportReport();
+        Set<String> seen = new HashSet<>();
+        List<Row> group = new ArrayList<>(batchSize);
+        long start = System.nanoTime();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            Row row = parse(lineNumber, line, report);
+            if (row == null) {
+                continue;
+            }
+            if (!seen.add(row.username)) {
+                fail(report, row, "duplicate username in file");
+                continue;
+            }
+            group.add(row);
+            if (group.size() == batchSize) {
+                importGroup(group, report);
+                group.clear();
+                seen.clear();
+            }
+        }
+        if (!group.isEmpty()) {
+            importGroup(group, report);
+        }
+        log.info("User import finished in {} ms - {} imported, {} failed",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), report.getImported(), report.getFailed());
+        return report;
+    }
+
+    private Row parse(long lineNumber, String line, UserImportReport report) {
+        CreateUserRequest request;
+        try {
+            request = objectMapper.readValue(line, CreateUserRequest.class);
+        } catch (JsonProcessingException e) {
+            failed.incrementAndGet();
+            report.recordFailure(lineNumber, null, "malformed JSON");
+            return null;
+        }
+        Row row = new Row(lineNumber, request.getUsername(), request.getPassword());
+        if (row.username == null || row.username.trim().isEmpty() || row.password == null) {
+            fail(report, row, "username and password must be provided");
+            return null;
+        }
+        if (row.password.length() < 7) {
+            fail(report, row, "password length is less than 7");
+            return null;
+        }
+        if (request.getConfirmPassword() != null && !request.getConfirmPassword().equals(row.password)) {
+            fail(report, row, "mismatched confirm password");
+            return null;
+        }
+        return row;
+    }
+
+    private void importGroup(List<Row> group, UserImportReport report) {
+        List<Row> rows = withoutExistingUsernames(group, report);
+
+        List<ForkJoinTask<String>> hashes = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            hashes.add(hashPool.submit(() -> bCryptPasswordEncoder.encode(row.password)));
+        }
+        List<Row> hashed = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            try {
+                rows.get(i).hash = hashes.get(i).join();
+                hashed.add(rows.get(i));
+            } catch (RuntimeException e) {
+                fail(report, rows.get(i), "password could not be hashed");
+            }
+        }
+        if (hashed.isEmpty()) {
+            return;
+        }
+
+        try {
+            insert(hashed);
+            imported(hashed, report);
+        } catch (RuntimeException e) {
+            if (hashed.size() == 1) {
+                fail(report, hashed.get(0), "rejected by the database");
+                return;
+            }
+            log.warn("Group of {} users failed, inserting them one by one - {}", hashed.size(), e.getMessage());
+            for (Row row : hashed) {
+                try {
+                    insert(Collections.singletonList(row));
+                    imported(Collections.singletonList(row), report);
+                } catch (RuntimeException single) {
+                    fail(report, row, "rejected by the database");
+                }
+            }
+        }
+    }
+
+    /**
+     * Fails the rows whose username is taken and returns the others. Only the
+     * names the filter flags are looked up, with one query for the group.
+     */
+    private List<Row> withoutExistingUsernames(List<Row> group, UserImportReport report) {
+        List<String> candidates = new ArrayList<>();
+        for (Row row : group) {
+            if (usernameFilter.mightExist(row.username)) {
+                candidates.add(row.username);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return group;
+        }
+        Set<String> existing = new HashSet<>(userRepository.findExistingUsernames(candidates));
+        List<Row> rows = new ArrayList<>(group.size());
+        for (Row row : group) {
+            if (existing.contains(row.username)) {
+                fail(report, row, "username already exists");
+            } else {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Carts are persisted before the users that own them so Hibernate's
+     * action queue holds one run of cart inserts and one of user inserts, each
+     * of which goes out as a JDBC batch.
+     */
+    private void insert(List<Row> rows) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Cart> carts = new ArrayList<>(rows.size());
+            List<User> users = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                Cart cart = new Cart();
+                User user = new User();
+                user.setUsername(row.username);
+                user.setPassword(row.hash);
+                user.setCart(cart);
+                carts.add(cart);
+                users.add(user);
+            }
+            cartRepository.saveAll(carts);
+            userRepository.saveAll(users);
+        });
+    }
+
+    private void imported(List<Row> rows, UserImportReport report) {
+        for (Row row : rows) {
+            usernameFilter.add(row.username);
+            userCache.invalidate(row.username);
+        }
+        imported.addAndGet(rows.size());
+        report.recordImported(rows.size());
+    }
+
+    private void fail(UserImportReport report, Row row, String reason) {
+        failed.incrementAndGet();
+        report.recordFailure(row.line, row.username, reason);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("users.imported", imported, AtomicLong::get)
+                .tag("result", "success")
+                .register(registry);
+        FunctionCounter.builder("users.imported", failed, AtomicLong::get)
+                .tag("result", "failure")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        hashPool.shutdownNow();
+    }
+
+    private static final class Row {
+
+        private final long line;
+
+        private final String username;
+
+        private final String password;
+
+        private String hash;
+
+        private Row(long line, String username, String password) {
+            this.line = line;
+            this.username = username;
+            this.password = password;
+        }
+    }
+}
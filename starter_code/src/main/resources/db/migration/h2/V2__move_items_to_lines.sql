@@ -0,0 +1,59 @@
+-- Carts and orders held one join row per unit of an item; they now hold one line per
+-- item with a quantity and the unit price. Existing rows are grouped into those lines.
+
+create table cart_line (
+    id bigint not null,
+    item_id bigint not null,
+    quantity integer not null,
+    unit_price_minor bigint not null,
+    cart_id bigint not null,
+    primary key (id),
+    constraint fk_cart_line_cart foreign key (cart_id) references cart (id),
+    constraint fk_cart_line_item foreign key (item_id) references item (id)
+);
+
+-- Ids are numbered here; V3 starts cart_line_seq above them
+insert into cart_line (id, item_id, quantity, unit_price_minor, cart_id)
+    select row_number() over (order by ci.cart_id, ci.items_id), ci.items_id, count(*),
+            cast(round(i.price * 100) as bigint), ci.cart_id
+    from cart_items ci
+    join item i on i.id = ci.items_id
+    group by ci.cart_id, ci.items_id, i.price;
+
+drop table cart_items;
+
+-- The total was kept as items were added and removed, or left null on an untouched cart
+alter table cart add column total_minor bigint;
+update cart set total_minor = cast(round(coalesce(total, 0) * 100) as bigint);
+alter table cart alter column total_minor set not null;
+alter table cart drop column total;
+
+create table user_order_line (
+    order_id bigint not null,
+    item_id bigint not null,
+    quantity integer not null,
+    unit_price numeric(19,2) not null,
+    constraint fk_user_order_line_order foreign key (order_id) references user_order (id)
+);
+
+-- Orders did not record what an item cost when they were placed; the catalog price is
+-- the nearest there is, since the first release had no way to change it
+insert into user_order_line (order_id, item_id, quantity, unit_price)
+    select oi.user_order_id, oi.items_id, count(*), i.price
+    from user_order_items oi
+    join item i on i.id = oi.items_id
+    group by oi.user_order_id, oi.items_id, i.price;
+
+alter table user_order add column created_at timestamp;
+alter table user_order add column item_count integer;
+alter table user_order add column reference varchar(36);
+
+-- Placement times were never stored, so older orders are dated at the migration
+update user_order o set
+    created_at = current_timestamp,
+    item_count = (select count(*) from user_order_items oi where oi.user_order_id = o.id),
+    reference = cast(random_uuid() as varchar(36));
+
+alter table user_order add constraint uk_user_order_reference unique (reference);
+
+drop table user_order_items;
@@ -0,0 +1,26 @@
+-- Ids come from pooled sequences stepping by the allocationSize of each
+-- @SequenceGenerator instead of identity columns and the shared hibernate_sequence.
+-- Each sequence starts above the ids already taken, so rows kept from the first
+-- release are never handed out again.
+
+create sequence cart_seq start with 1 increment by 50;
+alter sequence cart_seq restart with (select coalesce(max(id), 0) + 1 from cart);
+
+create sequence cart_line_seq start with 1 increment by 50;
+alter sequence cart_line_seq restart with (select coalesce(max(id), 0) + 1 from cart_line);
+
+-- Item ids below 51 are left to reference data such as the demo catalog in db/seed
+create sequence item_seq start with 51 increment by 50;
+alter sequence item_seq restart with (select greatest(coalesce(max(id), 0) + 1, 51) from item);
+
+create sequence user_seq start with 1 increment by 50;
+alter sequence user_seq restart with (select coalesce(max(id), 0) + 1 from user);
+
+create sequence user_order_seq start with 1 increment by 50;
+alter sequence user_order_seq restart with (select coalesce(max(id), 0) + 1 from user_order);
+
+alter table cart alter column id drop identity;
+alter table item alter column id drop identity;
+alter table user_order alter column id drop identity;
+
+drop sequence hibernate_sequence;
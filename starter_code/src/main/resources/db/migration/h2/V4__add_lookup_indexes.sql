@@ -0,0 +1,18 @@
+-- Indexes for the lookups the repositories make.
+
+-- ItemRepository.findByName and the name index rebuilt at startup
+create index if not exists idx_item_name on item (name);
+
+-- OrderRepository.findByUser, and findSummariesByUserId's keyset walk
+-- (user_id = ? and id < ? order by id desc) without a sort
+create index if not exists idx_user_order_user_id on user_order (user_id, id);
+
+-- Lines of an order, loaded with the order by findByUser and findWithLinesById
+create index if not exists idx_user_order_line_order_id on user_order_line (order_id);
+
+-- Lines of a cart, loaded whenever a cart is
+create index if not exists idx_cart_line_cart_id on cart_line (cart_id);
+
+-- CartRepository.findByUser and the inverse side of User.cart both go through
+-- user.cart_id; a user owns at most one cart
+create unique index if not exists idx_user_cart_id on user (cart_id);
@@ -0,0 +1,11 @@
+-- Demo catalog, kept out of the versioned migrations: drop classpath:db/seed/{vendor}
+-- from spring.flyway.locations to start with an empty catalog. Re-run whenever this file
+-- changes, so each row is only inserted if its id is free; the ids sit below the start
+-- of item_seq.
+
+insert into item (id, name, price, description)
+    select 1, 'Round Widget', 2.99, 'A widget that is round'
+    where not exists (select 1 from item where id = 1);
+insert into item (id, name, price, description)
+    select 2, 'Square Widget', 1.99, 'A widget that is square'
+    where not exists (select 1 from item where id = 2);
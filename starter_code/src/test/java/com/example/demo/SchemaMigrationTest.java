@@ -0,0 +1,99 @@
+package com.example.demo;
+
+import java.util.List;
+import java.util.Map;
+
+import org.flywaydb.core.Flyway;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * The context only starts if Hibernate accepts the migrated schema; this
+ * checks what validation does not: the indexes, the constraints Hibernate
+ * does not compare, and the seeded catalog.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SchemaMigrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void lookup_indexes_are_created() {
+        List<String> indexes = jdbcTemplate.queryForList(
+                "select lower(index_name) from information_schema.indexes where table_schema = 'PUBLIC'",
+                String.class);
+
+        Assert.assertTrue(indexes.toString(), indexes.containsAll(List.of("idx_item_name", "idx_user_order_user_id",
+                "idx_user_order_line_order_id", "idx_cart_line_cart_id", "idx_user_cart_id")));
+    }
+
+    @Test
+    public void cart_lines_require_an_item() {
+        String nullable = jdbcTemplate.queryForObject("select is_nullable from information_schema.columns"
+                + " where table_name = 'CART_LINE' and column_name = 'ITEM_ID'", String.class);
+
+        Assert.assertEquals("NO", nullable);
+    }
+
+    @Test
+    public void catalog_is_seeded_below_the_item_sequence() {
+        Long seeded = jdbcTemplate.queryForObject("select count(*) from item where id in (1, 2)", Long.class);
+        Long next = jdbcTemplate.queryForObject(
+                "select base_value from information_schema.sequences where sequence_name = 'ITEM_SEQ'", Long.class);
+
+        Assert.assertEquals(Long.valueOf(2), seeded);
+        Assert.assertTrue(next > 2);
+    }
+
+    @Test
+    public void first_release_data_is_carried_over() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:first-release;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER", "sa", "");
+        JdbcTemplate db = new JdbcTemplate(dataSource);
+        Flyway flyway = Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2").load();
+
+        /** What the first release created and stored: one unit per join row */
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2").target("1").load()
+                .migrate();
+        db.update("insert into item (name, price, description) values ('Round Widget', 2.99, 'round')");
+        db.update("insert into item (name, price, description) values ('Square Widget', 1.99, 'square')");
+        db.update("insert into cart (total) values (7.97)");
+        db.update("insert into cart (total) values (null)");
+        db.update("insert into user (id, username, password, cart_id) values (1, 'alice', 'x', 1)");
+        db.update("insert into cart_items (cart_id, items_id) values (1, 1), (1, 1), (1, 2)");
+        db.update("insert into user_order (total, user_id) values (4.98, 1)");
+        db.update("insert into user_order_items (user_order_id, items_id) values (1, 1), (1, 2)");
+
+        flyway.migrate();
+
+        List<Map<String, Object>> cartLines = db.queryForList(
+                "select item_id, quantity, unit_price_minor from cart_line where cart_id = 1 order by item_id");
+        Assert.assertEquals(2, cartLines.size());
+        Assert.assertEquals(2, ((Number) cartLines.get(0).get("QUANTITY")).intValue());
+        Assert.assertEquals(299L, ((Number) cartLines.get(0).get("UNIT_PRICE_MINOR")).longValue());
+        Assert.assertEquals(1, ((Number) cartLines.get(1).get("QUANTITY")).intValue());
+        Assert.assertEquals(List.of(797L, 0L),
+                db.queryForList("select total_minor from cart order by id", Long.class));
+
+        Map<String, Object> order = db.queryForMap("select item_count, reference, created_at from user_order");
+        Assert.assertEquals(2, ((Number) order.get("ITEM_COUNT")).intValue());
+        Assert.assertNotNull(order.get("REFERENCE"));
+        Assert.assertNotNull(order.get("CREATED_AT"));
+        Assert.assertEquals(Long.valueOf(2),
+                db.queryForObject("select count(*) from user_order_line where order_id = 1", Long.class));
+
+        /** New ids continue above the kept rows instead of reusing them */
+        Assert.assertEquals(Long.valueOf(3), db.queryForObject("select next value for cart_seq", Long.class));
+        Assert.assertEquals(Long.valueOf(51), db.queryForObject("select next value for item_seq", Long.class));
+        Assert.assertEquals(Long.valueOf(2), db.queryForObject("select next value for user_order_seq", Long.class));
+    }
+}
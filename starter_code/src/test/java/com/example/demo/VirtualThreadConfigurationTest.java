@@ -0,0 +1,45 @@
+package com.example.demo;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VirtualThreadConfigurationTest {
+
+    private static final boolean VIRTUAL_THREADS_SUPPORTED = Runtime.version().feature() >= 21;
+
+    @Test
+    public void executor_runs_tasks_on_virtual_threads_when_the_jdk_supports_them() throws Exception {
+        if (!VIRTUAL_THREADS_SUPPORTED) {
+            return;
+        }
+        ExecutorService executor = VirtualThreadConfiguration.newVirtualThreadPerTaskExecutor();
+        try {
+            Object virtual = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, executor).get();
+            Assert.assertEquals(Boolean.TRUE, virtual);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void enabling_on_an_older_jdk_fails_with_a_clear_message() {
+        if (VIRTUAL_THREADS_SUPPORTED) {
+            return;
+        }
+        try {
+            VirtualThreadConfiguration.newVirtualThreadPerTaskExecutor();
+            Assert.fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("Java"));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.cacheTests;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.cache.ItemChangedEvent;
+import com.example.demo.cache.ItemNameIndex;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+
+public class ItemNameIndexTest {
+
+    private final ItemRepository itemRepository = Mockito.mock(ItemRepository.class);
+
+    private final ItemNameIndex itemNameIndex = new ItemNameIndex(itemRepository,
+            new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)));
+
+    @Test
+    public void changes_are_applied_with_the_name_they_carry() {
+        Mockito.when(itemRepository.streamIdsAndNames()).thenReturn(Stream.<Object[]>of(new Object[]{1L, "Round Widget"}));
+        itemNameIndex.ensureLoaded();
+
+        itemNameIndex.onItemChanged(new ItemChangedEvent(1L, "Oval Widget"));
+        itemNameIndex.onItemChanged(new ItemChangedEvent(2L, "Square Widget"));
+
+        Assert.assertEquals(List.of(1L), itemNameIndex.findIdsByNameIgnoreCase("oval widget"));
+        Assert.assertEquals(List.of(), itemNameIndex.findIdsByNameIgnoreCase("round widget"));
+        Assert.assertEquals(List.of(2L), itemNameIndex.findIdsByNamePrefix("SQUARE", 10));
+
+        itemNameIndex.onItemChanged(new ItemChangedEvent(2L));
+
+        Assert.assertEquals(List.of(), itemNameIndex.findIdsByNamePrefix("square", 10));
+        Mockito.verify(itemRepository, Mockito.never()).findById(Mockito.anyLong());
+    }
+
+    @Test
+    public void changes_during_the_build_are_applied_after_it() {
+        /**
+         * Item 1 is renamed while the build is reading rows; the row it reads
+         * afterwards still has the old name
+         */
+        Mockito.when(itemRepository.streamIdsAndNames()).thenReturn(Stream.<Object[]>of(
+                new Object[]{2L, "Square Widget"}, new Object[]{1L, "Round Widget"})
+                .peek(row -> {
+                    if (row[0].equals(2L)) {
+                        itemNameIndex.onItemChanged(new ItemChangedEvent(1L, "Oval Widget"));
+                    }
+                }));
+
+        itemNameIndex.ensureLoaded();
+
+        Assert.assertEquals(List.of(1L), itemNameIndex.findIdsByNameIgnoreCase("oval widget"));
+        Assert.assertEquals(List.of(), itemNameIndex.findIdsByNameIgnoreCase("round widget"));
+        Assert.assertEquals(2, itemNameIndex.size());
+    }
+
+    @Test
+    public void changes_before_the_build_are_left_to_it() {
+        itemNameIndex.onItemChanged(new ItemChangedEvent(1L, "Round Widget"));
+        Mockito.when(itemRepository.streamIdsAndNames()).thenReturn(Stream.of());
+
+        itemNameIndex.ensureLoaded();
+
+        Assert.assertEquals(0, itemNameIndex.size());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.cacheTests;
+
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.example.demo.cache.UserCache;
+import com.example.demo.cache.UserCredentials;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.UserRepository;
+
+public class UserCacheTest {
+
+    private final UserRepository userRepository = Mockito.mock(UserRepository.class);
+
+    private final UserCache userCache = new UserCache(userRepository, 2, 600);
+
+    @Test
+    public void credentials_are_loaded_once() {
+        user(1L, "kian", "hash");
+
+        UserCredentials first = userCache.findCredentials("kian");
+        UserCredentials second = userCache.findCredentials("kian");
+
+        Assert.assertEquals(1L, second.getUserId());
+        Assert.assertEquals("hash", second.getPasswordHash());
+        Assert.assertSame(first, second);
+        Mockito.verify(userRepository, Mockito.times(1)).findByUsername("kian");
+        Assert.assertEquals(1, userCache.getHitCount());
+        Assert.assertEquals(1, userCache.getMissCount());
+    }
+
+    @Test
+    public void cached_user_is_loaded_by_primary_key() {
+        User user = user(1L, "kian", "hash");
+        Mockito.when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        userCache.findCredentials("kian");
+
+        Assert.assertSame(user, userCache.findUser("kian"));
+        Mockito.verify(userRepository, Mockito.times(1)).findByUsername("kian");
+        Mockito.verify(userRepository).findById(1L);
+    }
+
+    @Test
+    public void unknown_usernames_are_not_cached() {
+        Assert.assertNull(userCache.findCredentials("nobody"));
+        Assert.assertNull(userCache.findCredentials("nobody"));
+
+        Mockito.verify(userRepository, Mockito.times(2)).findByUsername("nobody");
+        Assert.assertEquals(0, userCache.size());
+    }
+
+    @Test
+    public void invalidate_reloads_the_new_hash() {
+        User user = user(1L, "kian", "old");
+        userCache.findCredentials("kian");
+
+        user.setPassword("new");
+        userCache.invalidate("kian");
+
+        Assert.assertEquals("new", userCache.findCredentials("kian").getPasswordHash());
+    }
+
+    @Test
+    public void size_is_bounded() {
+        user(1L, "a", "hash");
+        user(2L, "b", "hash");
+        user(3L, "c", "hash");
+
+        userCache.findCredentials("a");
+        userCache.findCredentials("b");
+        userCache.findCredentials("c");
+
+        Assert.assertEquals(2, userCache.size());
+    }
+
+    private User user(long id, String username, String hash) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setPassword(hash);
+        Mockito.when(userRepository.findByUsername(username)).thenReturn(user);
+        return user;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.demo.cacheTests;
+
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.cache.UsernameFilter;
+import com.example.demo.model.persistence.repositories.UserRepository;
+
+public class UsernameFilterTest {
+
+    private final UserRepository userRepository = Mockito.mock(UserRepository.class);
+
+    private UsernameFilter filter(int expectedUsers, String... usernames) {
+        Mockito.when(userRepository.streamUsernames()).thenReturn(Stream.of(usernames));
+        return new UsernameFilter(userRepository,
+                new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)), expectedUsers, 0.01);
+    }
+
+    @Test
+    public void seeded_and_added_names_are_never_missed() {
+        UsernameFilter filter = filter(1000, "kian", "bob");
+        filter.add("alice");
+
+        Assert.assertTrue(filter.mightExist("kian"));
+        Assert.assertTrue(filter.mightExist("bob"));
+        Assert.assertTrue(filter.mightExist("alice"));
+    }
+
+    @Test
+    public void false_positive_rate_stays_near_the_target() {
+        UsernameFilter filter = filter(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("user" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightExist("other" + i)) {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue("false positives: " + falsePositives, falsePositives < 200);
+    }
+
+    @Test
+    public void filter_is_sized_from_the_expected_users() {
+        UsernameFilter filter = filter(1000);
+
+        Assert.assertTrue(filter.getBitCount() >= 9585);
+        Assert.assertEquals(7, filter.getHashCount());
+    }
+}
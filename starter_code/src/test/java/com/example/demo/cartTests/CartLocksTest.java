@@ -0,0 +1,68 @@
+package com.example.demo.cartTests;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.example.demo.cart.CartLocks;
+
+public class CartLocksTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void stripe_count_is_rounded_up_to_a_power_of_two() {
+        Assert.assertEquals(1, new CartLocks(1).getStripeCount());
+        Assert.assertEquals(64, new CartLocks(64).getStripeCount());
+        Assert.assertEquals(128, new CartLocks(65).getStripeCount());
+    }
+
+    @Test
+    public void same_user_waits_while_other_users_proceed() throws Exception {
+        CartLocks locks = new CartLocks(1024);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<?> holder = executor.submit(() -> locks.withLock("alice", () -> {
+            held.countDown();
+            await(release);
+            return null;
+        }));
+        Assert.assertTrue(held.await(5, TimeUnit.SECONDS));
+
+        Future<String> sameUser = executor.submit(() -> locks.withLock("alice", () -> "alice"));
+        /**
+         * Another user's cart is not behind alice's lock
+         */
+        Assert.assertEquals("bob", locks.withLock("bob", () -> "bob"));
+        try {
+            sameUser.get(200, TimeUnit.MILLISECONDS);
+            Assert.fail("second change to alice's cart ran while the first held the lock");
+        } catch (TimeoutException expected) {
+        }
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals("alice", sameUser.get(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
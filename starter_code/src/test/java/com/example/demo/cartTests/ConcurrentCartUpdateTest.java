@@ -0,0 +1,83 @@
+package com.example.demo.cartTests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.example.demo.controllers.CartController;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.ModifyCartRequest;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ConcurrentCartUpdateTest {
+
+    private static final int THREADS = 8;
+
+    private static final int ADDS_PER_THREAD = 25;
+
+    @Autowired
+    private CartController cartController;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private TransactionOperations transactionOperations;
+
+    @Test
+    public void concurrent_adds_for_one_user_are_not_lost() throws Exception {
+
+        User user = new User();
+        user.setUsername("concurrent-cart");
+        user.setPassword("not-a-real-hash");
+        user.setCart(new Cart());
+        userRepository.save(user);
+
+        ModifyCartRequest request = new ModifyCartRequest();
+        request.setUsername("concurrent-cart");
+        request.setItemId(1L);
+        request.setQuantity(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                tasks.add(() -> {
+                    for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                        Assert.assertEquals(HttpStatus.OK, cartController.addTocart(request).getStatusCode());
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> done : executor.invokeAll(tasks, 60, TimeUnit.SECONDS)) {
+                done.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int quantity = transactionOperations.execute(status -> userRepository.findByUsername("concurrent-cart")
+                .getCart().getQuantity(itemRepository.findById(1L).get()));
+        Assert.assertEquals(THREADS * ADDS_PER_THREAD, quantity);
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.demo.controllersTests;
 
 import com.example.demo.TestUtils;
+import com.example.demo.cache.ItemCache;
+import com.example.demo.cache.UserCache;
+import com.example.demo.cart.CartLocks;
 import com.example.demo.controllers.CartController;
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.Item;
@@ -8,16 +11,20 @@ import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.ItemRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.requests.CartOperation;
+import com.example.demo.model.requests.ModifyCartBatchRequest;
 import com.example.demo.model.requests.ModifyCartRequest;
+import com.example.demo.model.responses.CartResponse;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,9 +42,12 @@ public class CartControllerTest {
     public void setUp() {
 
         cartController = new CartController();
-        TestUtils.injectObject(cartController, "userRepository", userRepository);
-        TestUtils.injectObject(cartController, "itemRepository", itemRepository);
+        TestUtils.injectObject(cartController, "userCache", new UserCache(userRepository, 0, 600));
+        TestUtils.injectObject(cartController, "itemCache", new ItemCache(itemRepository, 100, 600));
         TestUtils.injectObject(cartController, "cartRepository", cartRepository);
+        TestUtils.injectObject(cartController, "cartLocks", new CartLocks(16));
+        TestUtils.injectObject(cartController, "transactionOperations",
+                new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)));
 
     }
 
@@ -70,29 +80,31 @@ public class CartControllerTest {
         Mockito.when(userRepository.findByUsername(request.getUsername())).thenReturn(user);
         Mockito.when(itemRepository.findById(request.getItemId())).thenReturn(Optional.of(item));
 
-        ResponseEntity<Cart> response = cartController.addTocart(request);
+        ResponseEntity<CartResponse> response = cartController.addTocart(request);
 
         Assert.assertNotNull(response);
 
-        Cart body = response.getBody();
+        CartResponse body = response.getBody();
 
         /**
-         * Expected values for list of items, totals, user, and cart id after
+         * Expected values for cart lines, totals, user, and cart id after
          * adding the items to card derived from 'request' object
          */
-        List<Item> expectedListOfItems = Collections.nCopies(request.getQuantity(), item);
-        BigDecimal expectedTotal = item.getPrice().multiply(BigDecimal.valueOf(request.getQuantity()));
+        BigDecimal expectedTotal = new BigDecimal("2.99").multiply(BigDecimal.valueOf(request.getQuantity()));
         Long expectedCartId = cart.getId();
-        User expectedUser = user;
 
         /**
          * Verify expected values match the the ones coming from the response
          * body
          */
         Assert.assertEquals(body.getTotal(), expectedTotal);
-        Assert.assertEquals(body.getItems(), expectedListOfItems);
+        Assert.assertEquals(1, body.getLines().size());
+        Assert.assertEquals(item.getId(), body.getLines().iterator().next().getItemId());
+        Assert.assertEquals("Round Widget", body.getLines().iterator().next().getName());
+        Assert.assertEquals(request.getQuantity(), body.getLines().iterator().next().getQuantity());
+        Assert.assertEquals(expectedTotal, body.getLines().iterator().next().getLineTotal());
         Assert.assertEquals(body.getId(), expectedCartId);
-        Assert.assertEquals(body.getUser(), expectedUser);
+        Assert.assertEquals(cart, user.getCart());
 
         Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
     }
@@ -129,39 +141,128 @@ public class CartControllerTest {
         Mockito.when(userRepository.findByUsername(request.getUsername())).thenReturn(user);
         Mockito.when(itemRepository.findById(request.getItemId())).thenReturn(Optional.of(item));
 
-        ResponseEntity<Cart> response = cartController.removeFromcart(request);
+        ResponseEntity<CartResponse> response = cartController.removeFromcart(request);
 
         Assert.assertNotNull(response);
 
-        Cart body = response.getBody();
+        CartResponse body = response.getBody();
 
         /**
-         * Expected values for list of items, price total, user, and cart id
+         * Expected values for cart lines, price total, user, and cart id
          * after removing the items from card
          */
-        List<Item> expectedListOfItems = List.of(); //a list containing zero elements 
         BigDecimal expectedTotal = BigDecimal.ZERO; // price total becomes zero after removing the itemes
         Long expectedCartId = cart.getId();
-        User expectedUser = user;
 
         /**
          * Verify expected values match the the ones coming from the response
          * body
          */
         Assert.assertEquals(body.getTotal().stripTrailingZeros(), expectedTotal);
-        Assert.assertEquals(body.getItems(), expectedListOfItems);
+        Assert.assertTrue(body.getLines().isEmpty()); // the line is dropped once no units are left
         Assert.assertEquals(body.getId(), expectedCartId);
-        Assert.assertEquals(body.getUser(), expectedUser);
+        Assert.assertEquals(cart, user.getCart());
 
         Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
 
     }
 
+    @Test
+    public void test_Add_Large_Quantity_Keeps_Single_Line() {
+
+        ModifyCartRequest request = new ModifyCartRequest();
+        request.setUsername("user");
+        request.setItemId(1L);
+        request.setQuantity(10_000);
+
+        Item item = new Item();
+        item.setId(1L);
+        item.setName("Round Widget");
+        item.setDescription("A widget that is round");
+        item.setPrice(new BigDecimal("2.99"));
+
+        Cart cart = new Cart();
+        cart.setId(1L);
+        cart.addItem(item, 5);
+
+        User user = new User();
+        user.setCart(cart);
+
+        cart.setUser(user);
+
+        Mockito.when(userRepository.findByUsername(request.getUsername())).thenReturn(user);
+        Mockito.when(itemRepository.findById(request.getItemId())).thenReturn(Optional.of(item));
+
+        ResponseEntity<CartResponse> response = cartController.addTocart(request);
+
+        CartResponse body = response.getBody();
+
+        /**
+         * Adding more units of an item already in the cart only bumps the
+         * quantity of its existing line
+         */
+        Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assert.assertEquals(1, body.getLines().size());
+        Assert.assertEquals(10_005, body.getLines().iterator().next().getQuantity());
+        Assert.assertEquals(new BigDecimal("29914.95"), body.getTotal());
+        Assert.assertEquals(new BigDecimal("29914.95"), body.getLines().iterator().next().getLineTotal());
+    }
+
+    @Test
+    public void test_Remove_More_Than_In_Cart_Stops_At_Zero() {
+
+        ModifyCartRequest request = new ModifyCartRequest();
+        request.setUsername("user");
+        request.setItemId(1L);
+        request.setQuantity(5);
+
+        Item item = new Item();
+        item.setId(1L);
+        item.setName("Round Widget");
+        item.setDescription("A widget that is round");
+        item.setPrice(new BigDecimal("2.99"));
+
+        Item item2 = new Item();
+        item2.setId(2L);
+        item2.setName("Square Widget");
+        item2.setDescription("A widget that is square");
+        item2.setPrice(new BigDecimal("1.99"));
+
+        Cart cart = new Cart();
+        cart.setId(1L);
+        cart.addItem(item, 2);
+        cart.addItem(item2, 1);
+
+        User user = new User();
+        user.setCart(cart);
+
+        cart.setUser(user);
+
+        Mockito.when(userRepository.findByUsername(request.getUsername())).thenReturn(user);
+        Mockito.when(itemRepository.findById(request.getItemId())).thenReturn(Optional.of(item));
+
+        ResponseEntity<CartResponse> response = cartController.removeFromcart(request);
+
+        CartResponse body = response.getBody();
+
+        /**
+         * Only the two units held are removed, so the total is left with the
+         * price of the other item instead of going negative
+         */
+        Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assert.assertEquals(0, cart.getQuantity(item));
+        Assert.assertEquals(1, cart.getQuantity(item2));
+        Assert.assertEquals(1, body.getLines().size());
+        Assert.assertEquals(new BigDecimal("1.99"), body.getTotal());
+    }
+
     @Test
     public void test_Failed_Add_To_Cart_Invalid_Username() {
 
         ModifyCartRequest request = new ModifyCartRequest();
         request.setUsername("user");
+        request.setItemId(1L);
+        request.setQuantity(1);
 
         /**
          * Since the behavior of userRepository.findByUsername is undefined on
@@ -170,7 +271,7 @@ public class CartControllerTest {
          * cartController class
          *
          */
-        ResponseEntity<Cart> response = cartController.addTocart(request);
+        ResponseEntity<CartResponse> response = cartController.addTocart(request);
 
         Assert.assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         Assert.assertNotNull(response);
@@ -202,7 +303,7 @@ public class CartControllerTest {
         */
         Mockito.when(userRepository.findByUsername(request.getUsername())).thenReturn(user);
 
-        ResponseEntity<Cart> response = cartController.addTocart(request);
+        ResponseEntity<CartResponse> response = cartController.addTocart(request);
 
         Assert.assertNotNull(response);
         Assert.assertNull(response.getBody());
@@ -223,7 +324,7 @@ public class CartControllerTest {
          * at the time it gets invoked inside the method removeFromcart of
          * cartController class
          */
-        ResponseEntity<Cart> response = cartController.removeFromcart(request);
+        ResponseEntity<CartResponse> response = cartController.removeFromcart(request);
 
         Assert.assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         Assert.assertNotNull(response);
@@ -255,10 +356,237 @@ public class CartControllerTest {
          */
         Mockito.when(userRepository.findByUsername(request.getUsername())).thenReturn(user);
 
-        ResponseEntity<Cart> response = cartController.removeFromcart(request);
+        ResponseEntity<CartResponse> response = cartController.removeFromcart(request);
 
         Assert.assertNotNull(response);
         Assert.assertNull(response.getBody());
         Assert.assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
+
+    @Test
+    public void test_Success_Batch_Modify_Cart() {
+
+        Item item = new Item();
+        item.setId(1L);
+        item.setName("Round Widget");
+        item.setDescription("A widget that is round");
+        item.setPrice(new BigDecimal("2.99"));
+
+        Item item2 = new Item();
+        item2.setId(2L);
+        item2.setName("Square Widget");
+        item2.setDescription("A widget that is square");
+        item2.setPrice(new BigDecimal("1.99"));
+
+        Cart cart = new Cart();
+        cart.setId(1L);
+
+        User user = new User();
+        user.setCart(cart);
+
+        cart.setUser(user);
+
+        ModifyCartBatchRequest request = new ModifyCartBatchRequest();
+        request.setUsername("user");
+        request.setOperations(List.of(
+                operation(CartOperation.Action.ADD, 1L, 4),
+                operation(CartOperation.Action.ADD, 2L, 2),
+                operation(CartOperation.Action.REMOVE, 1L, 1)));
+
+        Mockito.when(userRepository.findByUsername(request.getUsername())).thenReturn(user);
+        Mockito.when(itemRepository.findAllById(Mockito.anyIterable())).thenReturn(List.of(item, item2));
+
+        ResponseEntity<CartResponse> response = cartController.modifyCart(request);
+
+        CartResponse body = response.getBody();
+
+        Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assert.assertEquals(3, cart.getQuantity(item));
+        Assert.assertEquals(2, cart.getQuantity(item2));
+        Assert.assertEquals(new BigDecimal("12.95"), body.getTotal());
+
+        /**
+         * Verify all referenced items are fetched in one query and the cart is
+         * saved once for the whole batch
+         */
+        Mockito.verify(userRepository, Mockito.times(1)).findByUsername("user");
+        Mockito.verify(itemRepository, Mockito.times(1)).findAllById(Mockito.anyIterable());
+        Mockito.verify(itemRepository, Mockito.never()).findById(Mockito.anyLong());
+        Mockito.verify(cartRepository, Mockito.times(1)).save(cart);
+    }
+
+    @Test
+    public void test_Failed_Batch_Modify_Cart_Invalid_ItemId() {
+
+        Cart cart = new Cart();
+        cart.setId(1L);
+
+        User user = new User();
+        user.setCart(cart);
+
+        cart.setUser(user);
+
+        ModifyCartBatchRequest request = new ModifyCartBatchRequest();
+        request.setUsername("user");
+        request.setOperations(List.of(operation(CartOperation.Action.ADD, 1L, 1)));
+
+        /**
+         * findAllById is not stubbed so none of the referenced items are found
+         */
+        Mockito.when(userRepository.findByUsername(request.getUsername())).thenReturn(user);
+
+        ResponseEntity<CartResponse> response = cartController.modifyCart(request);
+
+        Assert.assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        Assert.assertNull(response.getBody());
+        Mockito.verify(cartRepository, Mockito.never()).save(Mockito.any());
+    }
+
+    @Test
+    public void test_Failed_Batch_Modify_Cart_Invalid_Username() {
+
+        ModifyCartBatchRequest request = new ModifyCartBatchRequest();
+        request.setUsername("user");
+        request.setOperations(List.of(operation(CartOperation.Action.REMOVE, 1L, 1)));
+
+        ResponseEntity<CartResponse> response = cartController.modifyCart(request);
+
+        Assert.assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        Assert.assertNull(response.getBody());
+    }
+
+    @Test
+    public void test_Failed_Batch_Modify_Cart_Missing_Action() {
+
+        ModifyCartBatchRequest request = new ModifyCartBatchRequest();
+        request.setUsername("user");
+        request.setOperations(List.of(operation(null, 1L, 1)));
+
+        ResponseEntity<CartResponse> response = cartController.modifyCart(request);
+
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        Mockito.verifyNoInteractions(userRepository, itemRepository, cartRepository);
+    }
+
+    @Test
+    public void test_Failed_Add_To_Cart_Non_Positive_Quantity() {
+
+        for (int quantity : new int[] {0, -3}) {
+            ModifyCartRequest request = new ModifyCartRequest();
+            request.setUsername("user");
+            request.setItemId(1L);
+            request.setQuantity(quantity);
+
+            ResponseEntity<CartResponse> response = cartController.addTocart(request);
+
+            Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        }
+        Mockito.verifyNoInteractions(userRepository, itemRepository, cartRepository);
+    }
+
+    @Test
+    public void test_Failed_Remove_From_Cart_Non_Positive_Quantity() {
+
+        for (int quantity : new int[] {0, -3}) {
+            ModifyCartRequest request = new ModifyCartRequest();
+            request.setUsername("user");
+            request.setItemId(1L);
+            request.setQuantity(quantity);
+
+            ResponseEntity<CartResponse> response = cartController.removeFromcart(request);
+
+            Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        }
+        Mockito.verifyNoInteractions(userRepository, itemRepository, cartRepository);
+    }
+
+    @Test
+    public void test_Failed_Batch_Modify_Cart_Non_Positive_Quantity() {
+
+        for (int quantity : new int[] {0, -3}) {
+            ModifyCartBatchRequest request = new ModifyCartBatchRequest();
+            request.setUsername("user");
+            request.setOperations(List.of(
+                    operation(CartOperation.Action.ADD, 1L, 2),
+                    operation(CartOperation.Action.REMOVE, 1L, quantity)));
+
+            ResponseEntity<CartResponse> response = cartController.modifyCart(request);
+
+            /**
+             * One bad operation rejects the whole batch before anything is
+             * applied
+             */
+            Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        }
+        Mockito.verifyNoInteractions(userRepository, itemRepository, cartRepository);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_Cart_Add_Rejects_Non_Positive_Quantity() {
+
+        Item item = new Item();
+        item.setId(1L);
+        item.setPrice(new BigDecimal("2.99"));
+
+        new Cart().addItem(item, 0);
+    }
+
+    @Test
+    public void test_Cart_Remove_Rejects_Non_Positive_Quantity() {
+
+        Item item = new Item();
+        item.setId(1L);
+        item.setPrice(new BigDecimal("2.99"));
+
+        Cart cart = new Cart();
+        cart.addItem(item, 2);
+
+        for (int quantity : new int[] {0, -3}) {
+            try {
+                cart.removeItem(item, quantity);
+                Assert.fail("expected quantity " + quantity + " to be rejected");
+            } catch (IllegalArgumentException expected) {
+                // the clamp never sees it, so a negative removal cannot grow the line
+            }
+        }
+        Assert.assertEquals(2, cart.getQuantity(item));
+        Assert.assertEquals(598, cart.getTotalMinor());
+    }
+
+    private static CartOperation operation(CartOperation.Action action, long itemId, int quantity) {
+        CartOperation operation = new CartOperation();
+        operation.setAction(action);
+        operation.setItemId(itemId);
+        operation.setQuantity(quantity);
+        return operation;
+    }
+
+    @Test
+    public void test_Cart_Total_Is_Exact_In_Minor_Units() {
+
+        Item dime = new Item();
+        dime.setId(1L);
+        dime.setPrice(new BigDecimal("0.10"));
+
+        Item odd = new Item();
+        odd.setId(2L);
+        odd.setPrice(new BigDecimal(0.3));
+
+        Cart cart = new Cart();
+        for (int i = 0; i < 10; i++) {
+            cart.addItem(dime);
+        }
+        cart.addItem(odd, 3);
+        cart.removeItem(odd, 5);
+        cart.removeItem(dime, 3);
+
+        /**
+         * Seven dimes, nothing left of the removed item, and the running
+         * total agrees with the lines
+         */
+        Assert.assertEquals(70, cart.getTotalMinor());
+        Assert.assertEquals(new BigDecimal("0.70"), cart.getTotal());
+        Assert.assertEquals(1, cart.getLines().size());
+        Assert.assertFalse(cart.reconcileTotal());
+    }
 }
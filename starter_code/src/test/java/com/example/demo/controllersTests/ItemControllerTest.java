@@ -1,20 +1,31 @@
 package com.example.demo.controllersTests;
 
 import com.example.demo.TestUtils;
+import com.example.demo.cache.ItemCache;
+import com.example.demo.cache.ItemChangedEvent;
+import com.example.demo.cache.ItemNameIndex;
 import com.example.demo.controllers.ItemController;
 import com.example.demo.model.persistence.Item;
 import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.reactive.JdbcReadScheduler;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.Assert;
 import org.springframework.http.HttpStatus;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 
 public class ItemControllerTest {
@@ -23,11 +34,21 @@ public class ItemControllerTest {
 
     private ItemRepository itemRepository = Mockito.mock(ItemRepository.class);
 
+    private ItemCache itemCache;
+
     @Before
     public void setUp() {
         itemController = new ItemController();
 
+        /**
+         * The controller reads through a real cache sitting on the mocked repository
+         */
+        itemCache = new ItemCache(itemRepository, 100, 600);
+        TestUtils.injectObject(itemController, "itemCache", itemCache);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+        TestUtils.injectObject(itemController, "itemNameIndex", new ItemNameIndex(itemRepository, transactionTemplate));
         TestUtils.injectObject(itemController, "itemRepository", itemRepository);
+        TestUtils.injectObject(itemController, "jdbcReadScheduler", new JdbcReadScheduler(2));
 
     }
 
@@ -150,4 +171,242 @@ public class ItemControllerTest {
         Assert.assertEquals(itemsByName.getStatusCode(), HttpStatus.NOT_FOUND);
 
     }
+
+    @Test
+    public void test_Repeated_Get_Item_ById_Served_From_Cache() throws Exception {
+
+        final Item item = new Item();
+        item.setDescription(" widget that is round");
+        item.setId(1L);
+        item.setName("Round Widget");
+        item.setPrice(new BigDecimal(2.99));
+
+        Mockito.when(itemRepository.findById(item.getId())).thenReturn(Optional.of(item));
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(item, itemController.getItemById(item.getId()).getBody());
+        }
+
+        /**
+         * Only the first lookup reaches the repository
+         */
+        Mockito.verify(itemRepository, Mockito.times(1)).findById(item.getId());
+        Assert.assertEquals(2, itemCache.getHitCount());
+        Assert.assertEquals(1, itemCache.getMissCount());
+    }
+
+    @Test
+    public void test_Item_Change_Evicts_Cached_Listings() throws Exception {
+
+        final Item item = new Item();
+        item.setDescription(" widget that is round");
+        item.setId(1L);
+        item.setName("Round Widget");
+        item.setPrice(new BigDecimal(2.99));
+
+        Mockito.when(itemRepository.findAll()).thenReturn(List.of(item));
+        Mockito.when(itemRepository.findById(item.getId())).thenReturn(Optional.of(item));
+
+        itemController.getItems();
+        itemController.getItemById(item.getId());
+        itemCache.onItemChanged(new ItemChangedEvent(item.getId()));
+        itemController.getItems();
+        itemController.getItemById(item.getId());
+
+        /**
+         * The listing is reloaded after the change, and loading it primes the
+         * item by id again so findById never reaches the repository
+         */
+        Mockito.verify(itemRepository, Mockito.times(2)).findAll();
+        Mockito.verify(itemRepository, Mockito.never()).findById(item.getId());
+    }
+
+    @Test
+    public void test_Catalog_Larger_Than_Cache_Is_Not_Cached() throws Exception {
+
+        final Item round = new Item();
+        round.setId(1L);
+        round.setName("Round Widget");
+        final Item square = new Item();
+        square.setId(2L);
+        square.setName("Square Widget");
+
+        ItemCache smallCache = new ItemCache(itemRepository, 1, 600);
+        TestUtils.injectObject(itemController, "itemCache", smallCache);
+        Mockito.when(itemRepository.findAll()).thenReturn(List.of(round, square));
+
+        Assert.assertEquals(List.of(round, square), itemController.getItems().getBody());
+        Assert.assertEquals(List.of(round, square), itemController.getItems().getBody());
+
+        Mockito.verify(itemRepository, Mockito.times(2)).findAll();
+        Assert.assertEquals(0, smallCache.size());
+    }
+
+    @Test
+    public void test_Search_Items_By_Name_Prefix_And_Ignore_Case() throws Exception {
+
+        final Item round = new Item();
+        round.setDescription(" widget that is round");
+        round.setId(1L);
+        round.setName("Round Widget");
+        round.setPrice(new BigDecimal(2.99));
+
+        final Item square = new Item();
+        square.setDescription("  widget that is square");
+        square.setId(2L);
+        square.setName("Square Widget");
+        square.setPrice(new BigDecimal(1.99));
+
+        final Item roundel = new Item();
+        roundel.setDescription("  a roundel");
+        roundel.setId(3L);
+        roundel.setName("roundel");
+        roundel.setPrice(new BigDecimal(0.99));
+
+        Mockito.when(itemRepository.streamIdsAndNames()).thenReturn(Stream.of(
+                new Object[]{1L, "Round Widget"},
+                new Object[]{2L, "Square Widget"},
+                new Object[]{3L, "roundel"}));
+        Mockito.when(itemRepository.findAllById(Mockito.anyIterable())).thenReturn(List.of(round, roundel));
+
+        /**
+         * Prefix matches ignore case and come back ordered by name
+         */
+        ResponseEntity<List<Item>> prefix = itemController.searchItemsByName("ROUND", "prefix", 20);
+
+        Assert.assertEquals(HttpStatus.OK, prefix.getStatusCode());
+        Assert.assertEquals(List.of(round, roundel), prefix.getBody());
+
+        ResponseEntity<List<Item>> ignoreCase = itemController.searchItemsByName("round WIDGET", "ignore-case", 20);
+
+        Assert.assertEquals(HttpStatus.OK, ignoreCase.getStatusCode());
+        Assert.assertEquals(List.of(round), ignoreCase.getBody());
+
+        ResponseEntity<List<Item>> limited = itemController.searchItemsByName("r", "prefix", 1);
+
+        Assert.assertEquals(List.of(round), limited.getBody());
+
+        /**
+         * The index is built once and the matched items come from the cache
+         */
+        Mockito.verify(itemRepository, Mockito.times(1)).streamIdsAndNames();
+        Mockito.verify(itemRepository, Mockito.times(1)).findAllById(Mockito.anyIterable());
+    }
+
+    @Test
+    public void test_Search_Items_By_Name_Unknown_Mode_Or_No_Match() throws Exception {
+
+        Mockito.when(itemRepository.streamIdsAndNames()).thenReturn(Stream.empty());
+
+        Assert.assertEquals(HttpStatus.BAD_REQUEST,
+                itemController.searchItemsByName("Round", "fuzzy", 20).getStatusCode());
+        Assert.assertEquals(HttpStatus.NOT_FOUND,
+                itemController.searchItemsByName("Round", "prefix", 20).getStatusCode());
+    }
+
+    @Test
+    public void test_Search_Items_By_Name_Prefix_Rejects_Invalid_Limit() throws Exception {
+
+        for (int limit : new int[] {0, -1, 1001}) {
+            Assert.assertEquals(HttpStatus.BAD_REQUEST,
+                    itemController.searchItemsByName("Round", "prefix", limit).getStatusCode());
+        }
+        Mockito.verifyNoInteractions(itemRepository);
+    }
+
+    @Test
+    public void test_Get_Item_Page_By_Offset_And_Keyset() throws Exception {
+
+        final Item item = new Item();
+        item.setDescription("  widget that is square");
+        item.setId(2L);
+        item.setName("Square Widget");
+        item.setPrice(new BigDecimal(1.99));
+
+        Mockito.when(itemRepository.findAllByOrderByIdAsc(PageRequest.of(1, 1))).thenReturn(List.of(item));
+        Mockito.when(itemRepository.findByIdGreaterThanOrderByIdAsc(1L, PageRequest.of(0, 1))).thenReturn(List.of(item));
+
+        ResponseEntity<List<Item>> offsetPage = itemController.getItemPage(1, 1, null);
+        ResponseEntity<List<Item>> keysetPage = itemController.getItemPage(0, 1, 1L);
+
+        Assert.assertEquals(HttpStatus.OK, offsetPage.getStatusCode());
+        Assert.assertEquals(List.of(item), offsetPage.getBody());
+        Assert.assertEquals(HttpStatus.OK, keysetPage.getStatusCode());
+        Assert.assertEquals(List.of(item), keysetPage.getBody());
+
+        /**
+         * Paging never loads the full catalog
+         */
+        Mockito.verify(itemRepository, Mockito.never()).findAll();
+    }
+
+    @Test
+    public void test_Get_Item_Page_Invalid_Size() throws Exception {
+
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, itemController.getItemPage(0, 0, null).getStatusCode());
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, itemController.getItemPage(0, 5000, null).getStatusCode());
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, itemController.getItemPage(-1, 10, null).getStatusCode());
+    }
+
+    @Test
+    public void test_Stream_Items_In_Keyset_Pages() throws Exception {
+
+        final Item item = new Item();
+        item.setDescription("round");
+        item.setId(1L);
+        item.setName("Round Widget");
+        item.setPrice(new BigDecimal("2.99"));
+
+        final Item item1 = new Item();
+        item1.setDescription("square");
+        item1.setId(2L);
+        item1.setName("Square Widget");
+        item1.setPrice(new BigDecimal("1.99"));
+
+        Mockito.when(itemRepository.findByIdGreaterThanOrderByIdAsc(Mockito.eq(0L), Mockito.any()))
+                .thenReturn(List.of(item, item1));
+
+        List<Item> streamed = itemController.streamItems().collectList().block(Duration.ofSeconds(5));
+
+        /**
+         * A short first page ends the stream without another query
+         */
+        Assert.assertEquals(List.of(item, item1), streamed);
+        Mockito.verify(itemRepository, Mockito.times(1)).findByIdGreaterThanOrderByIdAsc(Mockito.anyLong(), Mockito.any());
+    }
+
+    @Test
+    public void test_Stream_Items_Across_Several_Keyset_Pages() throws Exception {
+
+        /**
+         * The repository answers each keyset query from a catalog of more
+         * rows than fit in a few pages, in id order as the query would
+         */
+        List<Item> catalog = new ArrayList<>();
+        for (long id = 1; id <= 1203; id++) {
+            Item item = new Item();
+            item.setId(id * 2);
+            item.setName("Widget " + id);
+            item.setPrice(new BigDecimal("1.00"));
+            catalog.add(item);
+        }
+        List<Integer> pageSizes = new ArrayList<>();
+        Mockito.when(itemRepository.findByIdGreaterThanOrderByIdAsc(Mockito.anyLong(), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    long afterId = invocation.getArgument(0);
+                    Pageable page = invocation.getArgument(1);
+                    pageSizes.add(page.getPageSize());
+                    return catalog.stream()
+                            .filter(item -> item.getId() > afterId)
+                            .limit(page.getPageSize())
+                            .collect(Collectors.toList());
+                });
+
+        List<Item> streamed = itemController.streamItems().collectList().block(Duration.ofSeconds(5));
+
+        Assert.assertEquals(catalog, streamed);
+        int pageSize = pageSizes.get(0);
+        Assert.assertTrue(pageSize < catalog.size());
+        Assert.assertEquals(catalog.size() / pageSize + 1, pageSizes.size());
+    }
 }
@@ -1,20 +1,44 @@
 package com.example.demo.controllersTests;
 
+import com.example.demo.TestUtils;
+import com.example.demo.cache.UserCache;
+import com.example.demo.cart.CartLocks;
 import com.example.demo.controllers.OrderController;
 import com.example.demo.model.persistence.Cart;
 import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.OrderLine;
 import com.example.demo.model.persistence.User;
 import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.OrderRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.OrderReceipt;
+import com.example.demo.model.responses.OrderResponse;
+import com.example.demo.model.responses.OrderSummary;
+import com.example.demo.orders.AsyncOrderWriter;
+import com.example.demo.orders.InMemoryIdempotencyKeyStore;
+import com.example.demo.orders.PendingOrder;
+import com.example.demo.reactive.JdbcReadScheduler;
 import java.math.BigDecimal;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import java.util.List;
 import org.junit.Assert;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
 
 
 public class OrderControllerTest {
@@ -25,6 +49,10 @@ public class OrderControllerTest {
 
     private UserRepository userRepository= Mockito.mock(UserRepository.class);
 
+    private CartRepository cartRepository = Mockito.mock(CartRepository.class);
+
+    private AsyncOrderWriter asyncOrderWriter = Mockito.mock(AsyncOrderWriter.class);
+
     public OrderControllerTest() {
         System.out.println("com.example.demo.controllersTests.OrderControllerTest.<init>()");
     }
@@ -36,7 +64,14 @@ public class OrderControllerTest {
         /**
          * Inject mocked dependencies into 'orderController' objects
          */
-        orderController = new OrderController(userRepository, orderRepository);
+        orderController = new OrderController(new UserCache(userRepository, 0, 600), orderRepository);
+        TestUtils.injectObject(orderController, "cartRepository", cartRepository);
+        TestUtils.injectObject(orderController, "transactionOperations",
+                new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)));
+        TestUtils.injectObject(orderController, "cartLocks", new CartLocks(16));
+        TestUtils.injectObject(orderController, "jdbcReadScheduler", new JdbcReadScheduler(2));
+        TestUtils.injectObject(orderController, "asyncOrderWriter", asyncOrderWriter);
+        TestUtils.injectObject(orderController, "idempotencyKeyStore", new InMemoryIdempotencyKeyStore(100, 60));
     }
 
     @Test
@@ -66,22 +101,31 @@ public class OrderControllerTest {
 
         String userName = "kian";
         Mockito.when(userRepository.findByUsername(userName)).thenReturn(user);
+        final BigDecimal cartTotal = cart.getTotal();
 
-        ResponseEntity<UserOrder> ordersForUser = orderController.submit(userName);
+        ResponseEntity<OrderResponse> ordersForUser = orderController.submit(userName, null);
         
-        final UserOrder body = ordersForUser.getBody();
+        final OrderResponse body = ordersForUser.getBody();
         
         /***
          * Verify response body, which represents the user order, contains the expected 
-         * User object, total and items values to be the same as the ones populated in 'cart' object. 
+         * reference, total and line values to be the same as the ones populated in 'cart' object. 
         ***/
         Assert.assertNotNull(body); 
-        Assert.assertEquals(body.getUser(), user);
-        Assert.assertEquals(body.getTotal(), cart.getTotal());
-        Assert.assertEquals(body.getItems(), cart.getItems());
+        Assert.assertNotNull(body.getReference());
+        Assert.assertEquals(body.getTotal(), cartTotal);
+        Assert.assertEquals(body.getLines(), List.of(new OrderLine(1L, new BigDecimal("2.99"), 1), new OrderLine(2L, new BigDecimal("1.99"), 1)));
+        Assert.assertEquals(body.getItemCount(), 2);
         
         Assert.assertEquals(ordersForUser.getStatusCode(), HttpStatus.OK);
 
+        /**
+         * Checkout empties the cart
+         */
+        Assert.assertTrue(cart.getLines().isEmpty());
+        Assert.assertEquals(0, cart.getTotalMinor());
+        Mockito.verify(cartRepository).save(cart);
+
     }
 
     @Test
@@ -120,9 +164,9 @@ public class OrderControllerTest {
         Mockito.when(userRepository.findByUsername(userName)).thenReturn(user);
         Mockito.when(orderRepository.findByUser(user)).thenReturn(List.of(userOrder));
 
-        final ResponseEntity<List<UserOrder>> ordersForUser = orderController.getOrdersForUser(userName);
+        final ResponseEntity<List<OrderResponse>> ordersForUser = orderController.getOrdersForUser(userName);
 
-        final List<UserOrder> body = ordersForUser.getBody(); 
+        final List<OrderResponse> body = ordersForUser.getBody(); 
         
         Assert.assertEquals(ordersForUser.getStatusCode(), HttpStatus.OK);
         
@@ -130,7 +174,8 @@ public class OrderControllerTest {
          * Verify response body, which represents user list of orders, is the same as 'userOrder' object
         **/
         Assert.assertNotNull(body); 
-        Assert.assertEquals(body, List.of(userOrder));
+        Assert.assertEquals(1, body.size());
+        Assert.assertEquals(userOrder.getId(), body.get(0).getId());
         
 //        ordersForUser.getBody().forEach(a -> System.out.println("->  " + a));
 
@@ -144,13 +189,37 @@ public class OrderControllerTest {
          * on the mocked userRepository object hence it returns null at the time of
          * invocation
          */
-        final ResponseEntity<UserOrder> submit = orderController.submit("username");
+        final ResponseEntity<OrderResponse> submit = orderController.submit("username", null);
 
         Assert.assertEquals(submit.getStatusCode(), HttpStatus.NOT_FOUND);
         Assert.assertEquals(submit.getBody(), null);
 
     }
 
+    @Test
+    public void test_Submit_Empty_Cart_Is_Rejected() throws Exception {
+
+        User user = new User();
+        user.setId(1L);
+        Cart cart = new Cart();
+        cart.setUser(user);
+        user.setCart(cart);
+
+        InMemoryIdempotencyKeyStore store = new InMemoryIdempotencyKeyStore(100, 60);
+        TestUtils.injectObject(orderController, "idempotencyKeyStore", store);
+        Mockito.when(userRepository.findByUsername("kian")).thenReturn(user);
+
+        /**
+         * Both paths refuse an empty cart, write nothing and leave the key free
+         * for a later attempt
+         */
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, orderController.submit("kian", "empty").getStatusCode());
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, orderController.submitAsync("kian", "empty").getStatusCode());
+        Mockito.verify(orderRepository, Mockito.never()).save(Mockito.any());
+        Mockito.verifyNoInteractions(asyncOrderWriter, cartRepository);
+        Assert.assertNull(store.claim("kian:empty"));
+    }
+
     @Test
     public void test_Failed_Get_Order_For_User() throws Exception {
         /**
@@ -158,11 +227,305 @@ public class OrderControllerTest {
          * on the mocked userRepository object hence it returns null at the time of
          * invocation
          */
-        final ResponseEntity<List<UserOrder>> ordersForUser = orderController.getOrdersForUser("kian");
+        final ResponseEntity<List<OrderResponse>> ordersForUser = orderController.getOrdersForUser("kian");
 
         Assert.assertEquals(ordersForUser.getStatusCode(), HttpStatus.NOT_FOUND);
         Assert.assertNull(ordersForUser.getBody());
 
     }
 
+    @Test
+    public void test_Successfull_Get_Order_Summaries_For_User() throws Exception {
+
+        String userName = "kian";
+
+        User user = new User();
+        user.setId(1L);
+        user.setUsername(userName);
+
+        List<OrderSummary> summaries = List.of(
+                new OrderSummary(9L, new BigDecimal("4.98"), 2, Instant.now()),
+                new OrderSummary(7L, new BigDecimal("2.99"), 1, Instant.now()));
+
+        Mockito.when(userRepository.findByUsername(userName)).thenReturn(user);
+        Mockito.when(orderRepository.findSummariesByUserId(1L, 10L, PageRequest.of(0, 2))).thenReturn(summaries);
+
+        final ResponseEntity<List<OrderSummary>> response = orderController.getOrderSummariesForUser(userName, 10L, 2);
+
+        Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assert.assertEquals(summaries, response.getBody());
+
+        /**
+         * Summaries never load full orders
+         */
+        Mockito.verify(orderRepository, Mockito.never()).findByUser(Mockito.any());
+    }
+
+    @Test
+    public void test_Get_Order_Summaries_Defaults_To_Newest_And_Validates_Size() throws Exception {
+
+        User user = new User();
+        user.setId(1L);
+
+        Mockito.when(userRepository.findByUsername("kian")).thenReturn(user);
+
+        Assert.assertEquals(HttpStatus.OK, orderController.getOrderSummariesForUser("kian", null, 20).getStatusCode());
+        Mockito.verify(orderRepository).findSummariesByUserId(1L, Long.MAX_VALUE, PageRequest.of(0, 20));
+
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, orderController.getOrderSummariesForUser("kian", null, 0).getStatusCode());
+        Assert.assertEquals(HttpStatus.NOT_FOUND, orderController.getOrderSummariesForUser("nobody", null, 20).getStatusCode());
+    }
+
+    @Test
+    public void test_Stream_Order_Summaries_Reads_Pages_Until_A_Short_One() throws Exception {
+
+        User user = new User();
+        user.setId(1L);
+
+        List<OrderSummary> fullPage = new ArrayList<>();
+        for (long id = 200; id > 100; id--) {
+            fullPage.add(new OrderSummary(id, new BigDecimal("2.99"), 1, Instant.now()));
+        }
+        List<OrderSummary> lastPage = List.of(new OrderSummary(42L, new BigDecimal("1.99"), 1, Instant.now()));
+
+        Mockito.when(userRepository.findByUsername("kian")).thenReturn(user);
+        Mockito.when(orderRepository.findSummariesByUserId(1L, Long.MAX_VALUE, PageRequest.of(0, 100))).thenReturn(fullPage);
+        Mockito.when(orderRepository.findSummariesByUserId(1L, 101L, PageRequest.of(0, 100))).thenReturn(lastPage);
+
+        final ResponseEntity<Flux<OrderSummary>> response = orderController.streamOrderSummariesForUser("kian");
+        List<OrderSummary> streamed = response.getBody().collectList().block(Duration.ofSeconds(5));
+
+        /**
+         * The next page starts below the last id of the previous one
+         */
+        Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assert.assertEquals(101, streamed.size());
+        Assert.assertEquals(Long.valueOf(42L), streamed.get(100).getId());
+        Mockito.verify(orderRepository, Mockito.times(2)).findSummariesByUserId(Mockito.anyLong(), Mockito.anyLong(), Mockito.any());
+
+        Assert.assertEquals(HttpStatus.NOT_FOUND, orderController.streamOrderSummariesForUser("nobody").getStatusCode());
+    }
+
+    @Test
+    public void test_Submit_Async_Queues_A_Snapshot_And_Returns_The_Reference() throws Exception {
+
+        User user = new User();
+        user.setId(1L);
+
+        final Item item = new Item();
+        item.setId(1L);
+        item.setPrice(new BigDecimal("2.99"));
+
+        Cart cart = new Cart();
+        cart.addItem(item, 2);
+        cart.setUser(user);
+        user.setCart(cart);
+
+        Mockito.when(userRepository.findByUsername("kian")).thenReturn(user);
+        List<Boolean> emptiedBeforeQueueing = new ArrayList<>();
+        Mockito.when(asyncOrderWriter.submit(Mockito.any())).thenAnswer(invocation -> {
+            emptiedBeforeQueueing.add(cart.getLines().isEmpty());
+            return true;
+        });
+
+        final ResponseEntity<OrderReceipt> response = orderController.submitAsync("kian", null);
+
+        ArgumentCaptor<PendingOrder> queued = ArgumentCaptor.forClass(PendingOrder.class);
+        Mockito.verify(asyncOrderWriter).submit(queued.capture());
+        Assert.assertEquals(List.of(true), emptiedBeforeQueueing);
+        Assert.assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        Assert.assertEquals(OrderReceipt.Status.PENDING, response.getBody().getStatus());
+        Assert.assertEquals(queued.getValue().getReference(), response.getBody().getReference());
+        Assert.assertEquals("/api/order/reference/" + response.getBody().getReference(),
+                response.getHeaders().getLocation().toString());
+        Assert.assertEquals(List.of(new OrderLine(1L, new BigDecimal("2.99"), 2)), queued.getValue().getLines());
+        Assert.assertTrue(cart.getLines().isEmpty());
+
+        /**
+         * Nothing is written on the request thread
+         */
+        Mockito.verify(orderRepository, Mockito.never()).save(Mockito.any());
+
+        /**
+         * A refused order puts back what was taken from the cart
+         */
+        cart.addItem(item, 2);
+        Mockito.when(asyncOrderWriter.submit(Mockito.any())).thenReturn(false);
+        Assert.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, orderController.submitAsync("kian", null).getStatusCode());
+        Assert.assertEquals(2, cart.getQuantity(item));
+
+        cart.removeItem(item, 2);
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, orderController.submitAsync("kian", null).getStatusCode());
+        Assert.assertEquals(HttpStatus.NOT_FOUND, orderController.submitAsync("nobody", null).getStatusCode());
+    }
+
+    @Test
+    public void test_Submit_Order_Reads_Respond_Async_From_The_Prefer_Header() throws Exception {
+
+        User user = new User();
+        user.setId(1L);
+        final Item item = new Item();
+        item.setId(1L);
+        item.setPrice(new BigDecimal("2.99"));
+        Cart cart = new Cart();
+        cart.setUser(user);
+        user.setCart(cart);
+
+        Mockito.when(userRepository.findByUsername("kian")).thenReturn(user);
+        Mockito.when(asyncOrderWriter.submit(Mockito.any())).thenReturn(true);
+
+        /**
+         * respond-async is picked out of a list of preferences, whatever its
+         * case or parameters
+         */
+        for (String prefer : new String[] {"respond-async", "respond-async, wait=10", "wait=10,RESPOND-ASYNC;x=1"}) {
+            cart.addItem(item);
+            Assert.assertEquals(prefer, HttpStatus.ACCEPTED,
+                    orderController.submitOrder("kian", null, prefer).getStatusCode());
+        }
+        Mockito.verify(asyncOrderWriter, Mockito.times(3)).submit(Mockito.any());
+
+        /**
+         * Without it the order is written on the request thread
+         */
+        for (String prefer : new String[] {null, "wait=10", "return=minimal"}) {
+            cart.addItem(item);
+            Assert.assertEquals(HttpStatus.OK, orderController.submitOrder("kian", null, prefer).getStatusCode());
+        }
+        Mockito.verify(orderRepository, Mockito.times(3)).save(Mockito.any());
+        Mockito.verify(asyncOrderWriter, Mockito.times(3)).submit(Mockito.any());
+    }
+
+    @Test
+    public void test_Submit_With_Idempotency_Key_Replays_The_Original_Order() throws Exception {
+
+        User user = new User();
+        user.setId(1L);
+        final Item item = new Item();
+        item.setId(1L);
+        item.setPrice(new BigDecimal("2.99"));
+        Cart cart = new Cart();
+        cart.addItem(item);
+        cart.setUser(user);
+        user.setCart(cart);
+
+        Mockito.when(userRepository.findByUsername("kian")).thenReturn(user);
+
+        final ResponseEntity<OrderResponse> first = orderController.submit("kian", "retry-me");
+        ArgumentCaptor<UserOrder> saved = ArgumentCaptor.forClass(UserOrder.class);
+        Mockito.verify(orderRepository).save(saved.capture());
+        UserOrder created = saved.getValue();
+        created.setId(3L);
+        Mockito.when(orderRepository.findIdByReference(created.getReference())).thenReturn(Optional.of(3L));
+        Mockito.when(orderRepository.findWithLinesById(3L)).thenReturn(Optional.of(created));
+
+        final ResponseEntity<OrderResponse> retry = orderController.submit("kian", "retry-me");
+
+        /**
+         * The retry is answered from the stored reference and writes nothing
+         */
+        Assert.assertEquals(HttpStatus.OK, retry.getStatusCode());
+        Assert.assertEquals(first.getBody().getReference(), retry.getBody().getReference());
+        Assert.assertEquals(Long.valueOf(3L), retry.getBody().getId());
+        Assert.assertEquals("true", retry.getHeaders().getFirst("Idempotent-Replayed"));
+        Mockito.verify(orderRepository, Mockito.times(1)).save(Mockito.any());
+
+        /**
+         * The same key from another user, or a new key, is a new order
+         */
+        Mockito.when(userRepository.findByUsername("other")).thenReturn(user);
+        cart.addItem(item);
+        Assert.assertNotEquals(created.getReference(), orderController.submit("other", "retry-me").getBody().getReference());
+        cart.addItem(item);
+        Assert.assertNotEquals(created.getReference(), orderController.submit("kian", "another-key").getBody().getReference());
+        Mockito.verify(orderRepository, Mockito.times(3)).save(Mockito.any());
+
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, orderController.submit("kian", "").getStatusCode());
+    }
+
+    @Test
+    public void test_Idempotency_Key_Is_Released_When_Submission_Fails() throws Exception {
+
+        User user = new User();
+        user.setId(1L);
+        final Item item = new Item();
+        item.setId(1L);
+        item.setPrice(new BigDecimal("2.99"));
+        Cart cart = new Cart();
+        cart.addItem(item);
+        cart.setUser(user);
+        user.setCart(cart);
+
+        InMemoryIdempotencyKeyStore store = new InMemoryIdempotencyKeyStore(100, 60);
+        TestUtils.injectObject(orderController, "idempotencyKeyStore", store);
+        Mockito.when(userRepository.findByUsername("kian")).thenReturn(user);
+        Mockito.when(orderRepository.save(Mockito.any())).thenThrow(new IllegalStateException("database down"));
+
+        try {
+            orderController.submit("kian", "retry-me");
+            Assert.fail("Expected the save failure to propagate");
+        } catch (IllegalStateException expected) {
+        }
+
+        /**
+         * Nothing was stored for the key, so the retry is a fresh attempt
+         */
+        Assert.assertNull(store.claim("kian:retry-me"));
+        Assert.assertTrue(store.claim("kian:retry-me").isInProgress());
+        Assert.assertEquals(HttpStatus.CONFLICT, orderController.submit("kian", "retry-me").getStatusCode());
+    }
+
+    @Test
+    public void test_Get_Order_Status_By_Reference() throws Exception {
+
+        Principal kian = caller(1L, "kian");
+        Principal other = caller(2L, "other");
+        Mockito.when(asyncOrderWriter.statusOf("queued", 1L)).thenReturn(OrderReceipt.Status.PENDING);
+        Mockito.when(asyncOrderWriter.statusOf("broken", 1L)).thenReturn(OrderReceipt.Status.FAILED);
+        Mockito.when(orderRepository.findIdByReferenceAndUserId("written", 1L)).thenReturn(Optional.of(12L));
+
+        ResponseEntity<OrderReceipt> queued = orderController.getOrderStatus(kian, "queued");
+        Assert.assertEquals(HttpStatus.ACCEPTED, queued.getStatusCode());
+        Assert.assertEquals(OrderReceipt.Status.PENDING, queued.getBody().getStatus());
+
+        ResponseEntity<OrderReceipt> written = orderController.getOrderStatus(kian, "written");
+        Assert.assertEquals(HttpStatus.OK, written.getStatusCode());
+        Assert.assertEquals(OrderReceipt.Status.COMPLETED, written.getBody().getStatus());
+        Assert.assertEquals(Long.valueOf(12L), written.getBody().getOrderId());
+
+        Assert.assertEquals(OrderReceipt.Status.FAILED, orderController.getOrderStatus(kian, "broken").getBody().getStatus());
+        Assert.assertEquals(HttpStatus.NOT_FOUND, orderController.getOrderStatus(kian, "unknown").getStatusCode());
+
+        /**
+         * Another user's orders are not found, whatever state they are in
+         */
+        for (String reference : List.of("queued", "written", "broken")) {
+            Assert.assertEquals(HttpStatus.NOT_FOUND, orderController.getOrderStatus(other, reference).getStatusCode());
+        }
+    }
+
+    @Test
+    public void test_Get_Order_By_Id() throws Exception {
+
+        UserOrder userOrder = new UserOrder();
+        userOrder.setId(5L);
+
+        Principal kian = caller(1L, "kian");
+        Mockito.when(orderRepository.findWithLinesByIdAndUserId(5L, 1L)).thenReturn(Optional.of(userOrder));
+
+        Assert.assertEquals(userOrder.getId(), orderController.getOrderById(kian, 5L).getBody().getId());
+        Assert.assertEquals(HttpStatus.NOT_FOUND, orderController.getOrderById(kian, 6L).getStatusCode());
+        Assert.assertEquals(HttpStatus.NOT_FOUND, orderController.getOrderById(caller(2L, "other"), 5L).getStatusCode());
+        Assert.assertEquals(HttpStatus.NOT_FOUND, orderController.getOrderById(null, 5L).getStatusCode());
+        Mockito.verify(orderRepository, Mockito.never()).findWithLinesById(Mockito.any());
+    }
+
+    private Principal caller(long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setPassword("hash");
+        Mockito.when(userRepository.findByUsername(username)).thenReturn(user);
+        return new UsernamePasswordAuthenticationToken(username, null, Collections.emptyList());
+    }
 }
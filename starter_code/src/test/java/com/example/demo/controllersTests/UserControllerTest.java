@@ -1,20 +1,31 @@
 package com.example.demo.controllersTests;
 
 import com.example.demo.TestUtils;
+import com.example.demo.cache.UserCache;
+import com.example.demo.cache.UsernameFilter;
 import com.example.demo.controllers.UserController;
 import com.example.demo.model.persistence.User;
-import com.example.demo.model.persistence.repositories.CartRepository;
 import com.example.demo.model.persistence.repositories.UserRepository;
 import com.example.demo.model.requests.CreateUserRequest;
+import com.example.demo.model.responses.UserImportReport;
+import com.example.demo.users.UserImporter;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class UserControllerTest {
 
@@ -22,21 +33,27 @@ public class UserControllerTest {
 
     private UserRepository userRepository= Mockito.mock(UserRepository.class);
 
-    private CartRepository cartRepository= Mockito.mock(CartRepository.class);
-
     private BCryptPasswordEncoder bCryptPasswordEncoder= Mockito.mock(BCryptPasswordEncoder.class);
 
     @Before
     public void setUp() {
         
         userController = new UserController();
+        injectUsernameFilter();
         
         /**
          * Inject mocked dependencies into 'userController' object using TestUtils.injectObject 
          */
         TestUtils.injectObject(userController, "userRepository", userRepository);
-        TestUtils.injectObject(userController, "cartRepository", cartRepository);
         TestUtils.injectObject(userController, "bCryptPasswordEncoder", bCryptPasswordEncoder);
+        TestUtils.injectObject(userController, "userCache", new UserCache(userRepository, 0, 600));
+    }
+
+    private void injectUsernameFilter(String... existingUsernames) {
+        Mockito.when(userRepository.streamUsernames()).thenReturn(Stream.of(existingUsernames));
+        UsernameFilter usernameFilter = new UsernameFilter(userRepository,
+                new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)), 1000, 0.01);
+        TestUtils.injectObject(userController, "usernameFilter", usernameFilter);
     }
 
 
@@ -179,11 +196,82 @@ public class UserControllerTest {
         user.setPassword("password");
 
         Mockito.when(userRepository.findByUsername(username)).thenReturn(user);
+        injectUsernameFilter(username);
         ResponseEntity<User> response = userController.createUser(request);
 
         Assert.assertNull(response.getBody());
         Assert.assertNotNull(response);
         Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        Mockito.verify(userRepository, Mockito.never()).save(Mockito.any());
     }
-}
 
+    @Test
+    public void test_New_UserName_Skips_Uniqueness_Query() {
+
+        CreateUserRequest request = new CreateUserRequest();
+        request.setUsername("newcomer");
+        request.setPassword("password");
+        request.setConfirmPassword("password");
+        injectUsernameFilter("username", "kian");
+
+        ResponseEntity<User> response = userController.createUser(request);
+
+        Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assert.assertNotNull(response.getBody().getCart());
+        Mockito.verify(userRepository, Mockito.never()).findByUsername(Mockito.anyString());
+        Mockito.verify(userRepository).save(response.getBody());
+    }
+
+    @Test
+    public void test_Invalid_Password_Writes_Nothing() {
+
+        CreateUserRequest request = new CreateUserRequest();
+        request.setUsername("kian");
+        request.setPassword("short");
+        request.setConfirmPassword("short");
+
+        ResponseEntity<User> response = userController.createUser(request);
+
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        Mockito.verify(userRepository, Mockito.never()).findByUsername(Mockito.anyString());
+        Mockito.verify(userRepository, Mockito.never()).save(Mockito.any());
+    }
+
+    @Test
+    public void test_Concurrently_Taken_UserName_Rejected_By_Constraint() {
+
+        CreateUserRequest request = new CreateUserRequest();
+        request.setUsername("kian");
+        request.setPassword("password");
+        request.setConfirmPassword("password");
+        Mockito.when(userRepository.save(Mockito.any(User.class)))
+                .thenThrow(new DataIntegrityViolationException("unique constraint"));
+
+        ResponseEntity<User> response = userController.createUser(request);
+
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    public void test_Import_Only_Allowed_For_Import_Admins() throws Exception {
+
+        UserImporter userImporter = Mockito.mock(UserImporter.class);
+        TestUtils.injectObject(userController, "userImporter", userImporter);
+        Mockito.when(userImporter.isAllowed("admin")).thenReturn(true);
+        Mockito.when(userImporter.importUsers(Mockito.any())).thenReturn(new UserImportReport());
+
+        InputStream body = new ByteArrayInputStream(new byte[0]);
+
+        Assert.assertEquals(HttpStatus.FORBIDDEN,
+                userController.importUsers(authenticated("someone"), body).getStatusCode());
+        Assert.assertEquals(HttpStatus.FORBIDDEN, userController.importUsers(null, body).getStatusCode());
+        Mockito.verify(userImporter, Mockito.never()).importUsers(Mockito.any());
+
+        Assert.assertEquals(HttpStatus.OK, userController.importUsers(authenticated("admin"), body).getStatusCode());
+        Mockito.verify(userImporter).importUsers(body);
+    }
+
+    private static UsernamePasswordAuthenticationToken authenticated(String username) {
+        return new UsernamePasswordAuthenticationToken(username, null, Collections.emptyList());
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.demo.ordersTests;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.example.demo.cart.CartLocks;
+import com.example.demo.model.persistence.Cart;
+import com.example.demo.model.persistence.Item;
+import com.example.demo.model.persistence.OrderLine;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.UserOrder;
+import com.example.demo.model.persistence.repositories.ItemRepository;
+import com.example.demo.model.persistence.repositories.OrderRepository;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.OrderReceipt;
+import com.example.demo.orders.AsyncOrderWriter;
+import com.example.demo.orders.IdempotencyKeyStore;
+import com.example.demo.orders.PendingOrder;
+
+/**
+ * Runs the writer against the in-memory H2 schema Hibernate generates, so the
+ * hand-written batch SQL is checked against the entity mappings.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class AsyncOrderWriterTest {
+
+    @Autowired
+    private AsyncOrderWriter asyncOrderWriter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TransactionOperations transactionOperations;
+
+    @Autowired
+    private IdempotencyKeyStore idempotencyKeyStore;
+
+    @Autowired
+    private CartLocks cartLocks;
+
+    @Test
+    public void accepted_orders_are_written_with_their_lines() throws Exception {
+
+        Item round = itemRepository.findById(1L).get();
+        Item square = itemRepository.findById(2L).get();
+
+        User user = new User();
+        user.setUsername("async-writer");
+        user.setPassword("not-a-real-hash");
+        user.setCart(new Cart());
+        user = userRepository.save(user);
+        Cart cart = user.getCart();
+        cart.setUser(user);
+        cart.addItem(round, 2);
+        cart.addItem(square);
+
+        UserOrder first = UserOrder.createFromCart(cart);
+        UserOrder second = UserOrder.createFromCart(cart);
+        Assert.assertTrue(asyncOrderWriter.submit(PendingOrder.of(first)));
+        Assert.assertTrue(asyncOrderWriter.submit(PendingOrder.of(second)));
+
+        for (int i = 0; i < 100 && asyncOrderWriter.statusOf(second.getReference()) != null; i++) {
+            Thread.sleep(50);
+        }
+
+        for (UserOrder accepted : new UserOrder[]{first, second}) {
+            Assert.assertNull(asyncOrderWriter.statusOf(accepted.getReference()));
+            Optional<Long> id = orderRepository.findIdByReference(accepted.getReference());
+            Assert.assertTrue(id.isPresent());
+
+            UserOrder written = orderRepository.findWithLinesById(id.get()).get();
+            Assert.assertEquals(List.of(new OrderLine(1L, round.getPrice(), 2), new OrderLine(2L, square.getPrice(), 1)),
+                    written.getLines());
+            Assert.assertEquals(3, written.getItemCount());
+            Assert.assertEquals(0, cart.getTotal().compareTo(written.getTotal()));
+            Assert.assertEquals(user.getId(), written.getUser().getId());
+        }
+    }
+
+    @Test
+    public void an_order_that_cannot_be_written_is_reported_failed() throws Exception {
+
+        Cart cart = new Cart();
+        User missing = new User();
+        missing.setId(Long.MAX_VALUE);
+        missing.setUsername("async-writer-missing");
+        cart.setUser(missing);
+        cart.addItem(itemRepository.findById(1L).get());
+
+        UserOrder order = UserOrder.createFromCart(cart);
+        Assert.assertTrue(asyncOrderWriter.submit(PendingOrder.of(order)));
+
+        for (int i = 0; i < 100 && asyncOrderWriter.statusOf(order.getReference()) == OrderReceipt.Status.PENDING; i++) {
+            Thread.sleep(50);
+        }
+
+        Assert.assertEquals(OrderReceipt.Status.FAILED, asyncOrderWriter.statusOf(order.getReference()));
+        Assert.assertEquals(OrderReceipt.Status.FAILED, asyncOrderWriter.statusOf(order.getReference(), Long.MAX_VALUE));
+        Assert.assertNull(asyncOrderWriter.statusOf(order.getReference(), 1L));
+        Assert.assertFalse(orderRepository.findIdByReference(order.getReference()).isPresent());
+    }
+
+    @Test
+    public void an_order_that_cannot_be_written_restores_the_cart_and_releases_its_key() throws Exception {
+
+        Item round = itemRepository.findById(1L).get();
+        Item square = itemRepository.findById(2L).get();
+
+        User user = new User();
+        user.setUsername("async-writer-restore");
+        user.setPassword("not-a-real-hash");
+        user.setCart(new Cart());
+        user = userRepository.save(user);
+        Cart cart = user.getCart();
+        cart.setUser(user);
+        cart.addItem(round, 2);
+
+        UserOrder order = UserOrder.createFromCart(cart);
+
+        /**
+         * The cart was emptied when the order was accepted, and the user has
+         * added something else since
+         */
+        String username = user.getUsername();
+        transactionOperations.executeWithoutResult(status -> userRepository.findByUsername(username)
+                .getCart().addItem(square));
+
+        /**
+         * The second copy repeats the reference of the first, so the unique
+         * constraint rejects it
+         */
+        String key = username + ":restore-me";
+        Assert.assertNull(idempotencyKeyStore.claim(key));
+        idempotencyKeyStore.complete(key, order.getReference());
+        Assert.assertTrue(asyncOrderWriter.submit(PendingOrder.of(order, key)));
+        Assert.assertTrue(asyncOrderWriter.submit(PendingOrder.of(order, key)));
+
+        int[] quantities = new int[2];
+        for (int i = 0; i < 100 && quantities[0] == 0; i++) {
+            Thread.sleep(50);
+            transactionOperations.executeWithoutResult(status -> {
+                Cart saved = userRepository.findByUsername(username).getCart();
+                quantities[0] = saved.getQuantity(round);
+                quantities[1] = saved.getQuantity(square);
+            });
+        }
+
+        Assert.assertEquals(2, quantities[0]);
+        Assert.assertEquals(1, quantities[1]);
+        Assert.assertTrue(orderRepository.findIdByReference(order.getReference()).isPresent());
+
+        /**
+         * The key is no longer bound to the failed order, so it can be used
+         * again
+         */
+        Assert.assertNull(idempotencyKeyStore.claim(key));
+    }
+
+    @Test
+    public void a_held_cart_lock_does_not_stall_the_writer() throws Exception {
+
+        Item round = itemRepository.findById(1L).get();
+
+        User user = new User();
+        user.setUsername("async-writer-locked");
+        user.setPassword("not-a-real-hash");
+        user.setCart(new Cart());
+        user = userRepository.save(user);
+        Cart cart = user.getCart();
+        cart.setUser(user);
+        cart.addItem(round);
+        String username = user.getUsername();
+
+        /**
+         * A request holds the user's cart lock while an order of theirs fails
+         */
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread request = new Thread(() -> cartLocks.withLock(username, () -> {
+            locked.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }));
+        request.start();
+        Assert.assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        try {
+            UserOrder order = UserOrder.createFromCart(cart);
+            Assert.assertTrue(asyncOrderWriter.submit(PendingOrder.of(order)));
+            Assert.assertTrue(asyncOrderWriter.submit(PendingOrder.of(order)));
+            UserOrder next = UserOrder.createFromCart(cart);
+            Assert.assertTrue(asyncOrderWriter.submit(PendingOrder.of(next)));
+
+            for (int i = 0; i < 100 && asyncOrderWriter.statusOf(next.getReference()) != null; i++) {
+                Thread.sleep(50);
+            }
+
+            Assert.assertTrue(orderRepository.findIdByReference(next.getReference()).isPresent());
+        } finally {
+            release.countDown();
+            request.join();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.ordersTests;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.example.demo.orders.IdempotencyRecord;
+import com.example.demo.orders.InMemoryIdempotencyKeyStore;
+
+public class InMemoryIdempotencyKeyStoreTest {
+
+    @Test
+    public void claimed_key_returns_in_progress_then_the_completed_reference() {
+        InMemoryIdempotencyKeyStore store = new InMemoryIdempotencyKeyStore(10, 60);
+
+        Assert.assertNull(store.claim("k"));
+        Assert.assertTrue(store.claim("k").isInProgress());
+
+        store.complete("k", "order-ref");
+        IdempotencyRecord record = store.claim("k");
+        Assert.assertFalse(record.isInProgress());
+        Assert.assertEquals("order-ref", record.getOrderReference());
+
+        store.release("k");
+        Assert.assertNull(store.claim("k"));
+    }
+
+    @Test
+    public void store_is_bounded_and_evicts_the_oldest_keys() {
+        InMemoryIdempotencyKeyStore store = new InMemoryIdempotencyKeyStore(2, 60);
+
+        store.claim("a");
+        store.claim("b");
+        store.claim("c");
+
+        Assert.assertEquals(2, store.size());
+        Assert.assertNull(store.claim("a"));
+    }
+
+    @Test
+    public void keys_expire_after_the_ttl() {
+        InMemoryIdempotencyKeyStore store = new InMemoryIdempotencyKeyStore(10, 0);
+
+        store.claim("a");
+        store.complete("a", "order-ref");
+
+        Assert.assertNull(store.claim("a"));
+    }
+}
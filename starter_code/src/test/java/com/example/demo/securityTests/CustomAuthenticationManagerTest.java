@@ -0,0 +1,146 @@
+package com.example.demo.securityTests;
+
+import com.example.demo.TestUtils;
+import com.example.demo.cache.UserCache;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.security.CustomAuthenticationManager;
+import com.example.demo.security.PasswordHashLimiter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+public class CustomAuthenticationManagerTest {
+
+    private CustomAuthenticationManager authenticationManager;
+
+    private UserRepository userRepository = Mockito.mock(UserRepository.class);
+
+    private UserCache userCache = new UserCache(userRepository, 100, 600);
+
+    private ExecutorService passwordHashExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Low BCrypt costs keep the test fast; the configured cost is 5
+     */
+    private BCryptPasswordEncoder currentEncoder = new BCryptPasswordEncoder(5);
+
+    @Before
+    public void setUp() {
+
+        authenticationManager = new CustomAuthenticationManager();
+
+        TestUtils.injectObject(authenticationManager, "UserRepository", userRepository);
+        TestUtils.injectObject(authenticationManager, "userCache", userCache);
+        TestUtils.injectObject(authenticationManager, "BCryptPasswordEncoder", currentEncoder);
+        TestUtils.injectObject(authenticationManager, "passwordHashLimiter", new PasswordHashLimiter(1, 10));
+        TestUtils.injectObject(authenticationManager, "passwordHashExecutor", passwordHashExecutor);
+        TestUtils.injectObject(authenticationManager, "bcryptStrength", 5);
+    }
+
+    @After
+    public void tearDown() {
+        passwordHashExecutor.shutdownNow();
+    }
+
+    @Test
+    public void test_Successful_Authentication_With_Current_Cost() {
+
+        User user = user(currentEncoder.encode("password"));
+
+        Authentication result = authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken("kian", "password"));
+
+        Assert.assertEquals("kian", result.getName());
+        Mockito.verify(userRepository, Mockito.never()).updatePassword(Mockito.anyLong(), Mockito.anyString());
+        Assert.assertTrue(user.getPassword().startsWith("$2a$05$"));
+    }
+
+    @Test
+    public void test_Repeated_Login_Served_From_Cache() {
+
+        user(currentEncoder.encode("password"));
+
+        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("kian", "password"));
+        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("kian", "password"));
+
+        Mockito.verify(userRepository, Mockito.times(1)).findByUsername("kian");
+        Assert.assertEquals(1, userCache.getHitCount());
+    }
+
+    @Test
+    public void test_Outdated_Cost_Rehashed_On_Login() throws Exception {
+
+        user(new BCryptPasswordEncoder(4).encode("password"));
+
+        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("kian", "password"));
+        passwordHashExecutor.shutdown();
+        Assert.assertTrue(passwordHashExecutor.awaitTermination(10, TimeUnit.SECONDS));
+
+        /**
+         * The stored hash is replaced by one with the configured cost, and the
+         * cached outdated hash is dropped
+         */
+        ArgumentCaptor<String> hash = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(userRepository).updatePassword(Mockito.eq(1L), hash.capture());
+        Assert.assertTrue(hash.getValue().startsWith("$2a$05$"));
+        Assert.assertTrue(currentEncoder.matches("password", hash.getValue()));
+        Assert.assertEquals(0, userCache.size());
+    }
+
+    @Test(expected = BadCredentialsException.class)
+    public void test_Wrong_Password_Rejected() {
+
+        user(currentEncoder.encode("password"));
+
+        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("kian", "wrong password"));
+    }
+
+    @Test
+    public void test_Rejected_Rehash_Does_Not_Fail_Login() {
+
+        user(new BCryptPasswordEncoder(4).encode("password"));
+        passwordHashExecutor.shutdown();
+
+        Authentication result = authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken("kian", "password"));
+
+        Assert.assertEquals("kian", result.getName());
+        Mockito.verify(userRepository, Mockito.never()).updatePassword(Mockito.anyLong(), Mockito.anyString());
+    }
+
+    @Test(expected = AuthenticationServiceException.class)
+    public void test_Saturated_Hash_Limit_Fails_Fast() {
+
+        user(currentEncoder.encode("password"));
+        PasswordHashLimiter limiter = new PasswordHashLimiter(1, 0);
+        TestUtils.injectObject(authenticationManager, "passwordHashLimiter", limiter);
+
+        /**
+         * The only admission is held by an outer hash, so the login is turned
+         * away instead of waiting
+         */
+        limiter.call(() -> authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken("kian", "password")));
+    }
+
+    private User user(String hash) {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("kian");
+        user.setPassword(hash);
+        Mockito.when(userRepository.findByUsername("kian")).thenReturn(user);
+        return user;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.securityTests;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.example.demo.security.JWTVerificationCache;
+import com.example.demo.security.SecurityConstants;
+import java.util.Date;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+
+public class JWTVerificationCacheTest {
+
+    private JWTVerificationCache verificationCache;
+
+    @Before
+    public void setUp() {
+        verificationCache = new JWTVerificationCache(2);
+    }
+
+    @Test
+    public void test_Repeated_Token_Skips_Verification() {
+
+        String token = token("kian", System.currentTimeMillis() + 60_000);
+
+        Assert.assertEquals("kian", verificationCache.verify(token));
+        Assert.assertEquals("kian", verificationCache.verify(token));
+        Assert.assertEquals("kian", verificationCache.verify(token));
+
+        /**
+         * Only the first presentation of the token is verified
+         */
+        Assert.assertEquals(1, verificationCache.getMissCount());
+        Assert.assertEquals(2, verificationCache.getHitCount());
+        Assert.assertEquals(2.0 / 3, verificationCache.getHitRatio(), 1e-9);
+    }
+
+    @Test(expected = SignatureVerificationException.class)
+    public void test_Tampered_Token_Rejected() {
+
+        String token = JWT.create()
+                .withSubject("kian")
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(HMAC512("another secret".getBytes()));
+
+        verificationCache.verify(token);
+    }
+
+    @Test
+    public void test_Expired_Token_Never_Cached() {
+
+        String token = token("kian", System.currentTimeMillis() - 1_000);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                verificationCache.verify(token);
+                Assert.fail("expired token accepted");
+            } catch (TokenExpiredException expected) {
+            }
+        }
+        Assert.assertEquals(0, verificationCache.getHitCount());
+        Assert.assertEquals(2, verificationCache.getMissCount());
+    }
+
+    @Test
+    public void test_Cache_Is_Bounded() {
+
+        String first = token("first", System.currentTimeMillis() + 60_000);
+        verificationCache.verify(first);
+        verificationCache.verify(token("second", System.currentTimeMillis() + 60_000));
+        verificationCache.verify(token("third", System.currentTimeMillis() + 60_000));
+
+        /**
+         * With room for two tokens the first one has been evicted and is verified again
+         */
+        verificationCache.verify(first);
+        Assert.assertEquals(4, verificationCache.getMissCount());
+        Assert.assertEquals(0, verificationCache.getHitCount());
+    }
+
+    private static String token(String subject, long expiresAt) {
+        return JWT.create()
+                .withSubject(subject)
+                .withExpiresAt(new Date(expiresAt))
+                .sign(HMAC512(SecurityConstants.SECRET.getBytes()));
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.demo.securityTests;
+
+import com.example.demo.security.LoginCredentials;
+import com.example.demo.security.LoginRequestParser;
+import com.example.demo.security.LoginRequestTooLargeException;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoginRequestParserTest {
+
+    private final LoginRequestParser parser = new LoginRequestParser(new ObjectMapper(), 128);
+
+    @Test
+    public void test_Reads_Credentials_And_Skips_Other_Fields() throws Exception {
+
+        LoginCredentials credentials = parser.parse(body(
+                "{\"id\":7,\"username\":\"kian\",\"cart\":{\"lines\":[1,2]},\"password\":\"s3cret\"}"));
+
+        Assert.assertEquals("kian", credentials.getUsername());
+        Assert.assertEquals("s3cret", credentials.getPassword());
+
+        LoginCredentials missing = parser.parse(body("{\"username\":\"kian\"}"));
+        Assert.assertNull(missing.getPassword());
+    }
+
+    @Test
+    public void test_Rejects_Bodies_That_Are_Not_Credential_Objects() throws Exception {
+
+        for (String invalid : new String[]{"[]", "\"kian\"", "{\"username\":[\"kian\"]}", "{\"username\":\"kian\""}) {
+            try {
+                parser.parse(body(invalid));
+                Assert.fail("accepted " + invalid);
+            } catch (JsonParseException expected) {
+            } catch (IOException expected) {
+                /**
+                 * Truncated input ends in an EOF error
+                 */
+                Assert.assertFalse(expected instanceof LoginRequestTooLargeException);
+            }
+        }
+    }
+
+    @Test(expected = LoginRequestTooLargeException.class)
+    public void test_Rejects_Oversized_Body_Without_Declared_Length() throws Exception {
+
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            padding.append('x');
+        }
+        parser.parse(body("{\"username\":\"kian\",\"password\":\"" + padding + "\"}"));
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
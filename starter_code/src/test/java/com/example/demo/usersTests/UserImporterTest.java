@@ -0,0 +1,125 @@
+package com.example.demo.usersTests;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.example.demo.cache.UsernameFilter;
+import com.example.demo.model.persistence.User;
+import com.example.demo.model.persistence.repositories.UserRepository;
+import com.example.demo.model.responses.UserImportReport;
+import com.example.demo.users.UserImporter;
+
+/**
+ * Imports into an in-memory H2 database of its own, as this context differs
+ * from the other tests', with groups small enough that a file spans several
+ * insert transactions.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"security.bcrypt.strength=4", "user.import.batch-size=3",
+        "user.import.admins=importer, other-importer",
+        "spring.datasource.url=jdbc:h2:mem:userimport;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER"})
+public class UserImporterTest {
+
+    @Autowired
+    private UserImporter userImporter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UsernameFilter usernameFilter;
+
+    @Autowired
+    private BCryptPasswordEncoder bCryptPasswordEncoder;
+
+    @Test
+    public void valid_rows_are_imported_and_invalid_rows_reported() throws IOException {
+        User existing = new User();
+        existing.setUsername("import-existing");
+        existing.setPassword("hash");
+        userRepository.save(existing);
+        usernameFilter.add("import-existing");
+
+        UserImportReport report = importUsers(
+                "{\"username\":\"import-a\",\"password\":\"password1\"}\n"
+                + "{\"username\":\"import-b\",\"password\":\"password2\",\"confirmPassword\":\"password2\"}\n"
+                + "\n"
+                + "{\"username\":\"import-c\",\"password\":\"short\"}\n"
+                + "{\"username\":\n"
+                + "{\"username\":\"import-a\",\"password\":\"password1\"}\n"
+                + "{\"username\":\"import-existing\",\"password\":\"password1\"}\n"
+                + "{\"username\":\"import-d\",\"password\":\"password4\"}\n"
+                + "{\"username\":\"import-e\",\"password\":\"password5\",\"confirmPassword\":\"other\"}\n");
+
+        Assert.assertEquals(3, report.getImported());
+        Assert.assertEquals(5, report.getFailed());
+        Assert.assertEquals(4, report.getFailures().get(0).getLine());
+        Assert.assertEquals(5, report.getFailures().get(1).getLine());
+        Assert.assertEquals("duplicate username in file", report.getFailures().get(2).getReason());
+        Assert.assertEquals("username already exists", report.getFailures().get(3).getReason());
+        Assert.assertEquals("import-e", report.getFailures().get(4).getUsername());
+
+        User imported = userRepository.findByUsername("import-b");
+        Assert.assertNotNull(imported.getCart());
+        Assert.assertTrue(bCryptPasswordEncoder.matches("password2", imported.getPassword()));
+        Assert.assertNotNull(userRepository.findByUsername("import-d"));
+    }
+
+    @Test
+    public void row_rejected_by_the_database_does_not_fail_its_group() throws IOException {
+        String tooLong = String.join("", Collections.nCopies(300, "x"));
+
+        UserImportReport report = importUsers(
+                "{\"username\":\"group-a\",\"password\":\"password1\"}\n"
+                + "{\"username\":\"" + tooLong + "\",\"password\":\"password1\"}\n"
+                + "{\"username\":\"group-c\",\"password\":\"password1\"}\n");
+
+        Assert.assertEquals(2, report.getImported());
+        Assert.assertEquals(1, report.getFailed());
+        Assert.assertEquals(2, report.getFailures().get(0).getLine());
+        Assert.assertNotNull(userRepository.findByUsername("group-a"));
+        Assert.assertNotNull(userRepository.findByUsername("group-c"));
+    }
+
+    @Test
+    public void name_repeated_in_a_later_group_is_reported_as_existing() throws IOException {
+
+        UserImportReport report = importUsers(
+                "{\"username\":\"repeat-a\",\"password\":\"password1\"}\n"
+                + "{\"username\":\"repeat-b\",\"password\":\"password1\"}\n"
+                + "{\"username\":\"repeat-c\",\"password\":\"password1\"}\n"
+                + "{\"username\":\"repeat-a\",\"password\":\"password2\"}\n");
+
+        /**
+         * The first group has been written by the time the repeat is read, so
+         * the existing-username check catches it
+         */
+        Assert.assertEquals(3, report.getImported());
+        Assert.assertEquals(1, report.getFailed());
+        Assert.assertEquals(4, report.getFailures().get(0).getLine());
+        Assert.assertEquals("username already exists", report.getFailures().get(0).getReason());
+        Assert.assertTrue(bCryptPasswordEncoder.matches("password1", userRepository.findByUsername("repeat-a").getPassword()));
+    }
+
+    @Test
+    public void only_listed_admins_may_import() {
+        Assert.assertTrue(userImporter.isAllowed("importer"));
+        Assert.assertTrue(userImporter.isAllowed("other-importer"));
+        Assert.assertFalse(userImporter.isAllowed("import-a"));
+        Assert.assertFalse(userImporter.isAllowed(null));
+    }
+
+    private UserImportReport importUsers(String ndjson) throws IOException {
+        return userImporter.importUsers(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+    }
+}